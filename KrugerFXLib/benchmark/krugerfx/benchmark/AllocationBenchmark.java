@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import java.lang.reflect.Field;
+
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.event.EventHandler;
+import javafx.event.EventType;
+import javafx.scene.Parent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import krugerfx.scene.ShadedScene;
+import krugerfx.scene.control.StageButton;
+import krugerfx.scene.control.StageButtonType;
+import krugerfx.scene.control.StageButtons;
+
+/**
+ * Checks that the interactive paths of {@code ShadedScene} stay within their allocation budgets,
+ * measuring the bytes allocated by the JavaFX Application Thread per operation.
+ *
+ * The resize handler is called directly with prepared events, so the event dispatch of JavaFX is
+ * not counted; the other operations go through the public API and include what JavaFX allocates
+ * for them. Budgets can be changed with the {@code benchmark.allocation.<operation>} system
+ * properties (bytes per operation).
+ *
+ * @author kleberkruger
+ */
+public class AllocationBenchmark extends Benchmarks {
+
+    private final int warmup = intParameter("benchmark.allocation.warmup", 20000);
+    private final int iterations = intParameter("benchmark.allocation.iterations", 50000);
+
+    private int counter;
+
+    @Override
+    protected void run() throws Exception {
+        if (allocatedBytes() == 0) {
+            throw new IllegalStateException("This JVM cannot measure thread allocations");
+        }
+        BorderPane root = new BorderPane();
+        StageButtons buttons = new StageButtons();
+        root.setTop(buttons);
+        ShadedScene scene = new ShadedScene(root, 300, 200);
+        Stage stage = new Stage();
+        stage.setScene(scene);
+        stage.show();
+        Parent container = scene.getRoot();
+
+        EventHandler<? super MouseEvent> handler = scene.getOnMouseMoved();
+        MouseEvent center = mouseEvent(scene, MouseEvent.MOUSE_MOVED, 150, 100, false);
+        MouseEvent corner = mouseEvent(scene, MouseEvent.MOUSE_MOVED, scene.getWidth() - 2, scene.getHeight() - 2, false);
+        budget("resize.moved", 0, () -> {
+            handler.handle((counter++ & 1) == 0 ? center : corner);
+        });
+
+        handler.handle(corner);
+        handler.handle(mouseEvent(scene, MouseEvent.MOUSE_PRESSED, scene.getWidth() - 2, scene.getHeight() - 2, true));
+        MouseEvent grow = mouseEvent(scene, MouseEvent.MOUSE_DRAGGED, scene.getWidth(), scene.getHeight(), true);
+        MouseEvent shrink = mouseEvent(scene, MouseEvent.MOUSE_DRAGGED, scene.getWidth() - 4, scene.getHeight() - 4, true);
+        budget("resize.dragged", 512, () -> {
+            handler.handle((counter++ & 1) == 0 ? grow : shrink);
+        });
+
+        budget("layout", 1024, () -> {
+            container.resize(300 + (counter++ & 1), 200);
+            container.layout();
+        });
+
+        ReadOnlyBooleanWrapper focused = focusedWrapper(stage);
+        budget("focus", 0, () -> {
+            focused.set((counter++ & 1) == 0);
+        });
+
+        StageButton maximize = findButton(buttons, StageButtonType.MAXIMIZE);
+        budget("action.maximize", 2048, maximize::fire);
+
+        stage.hide();
+    }
+
+    private void budget(String operation, double defaultBudget, Runnable runnable) {
+        Measurement measurement = measure(operation, warmup, iterations, runnable);
+        check(operation + " bytes per operation", measurement.getBytesPerOperation(),
+                doubleParameter("benchmark.allocation." + operation, defaultBudget));
+    }
+
+    private static MouseEvent mouseEvent(ShadedScene scene, EventType<MouseEvent> type, double x, double y, boolean pressed) {
+        MouseEvent event = new MouseEvent(type, x, y, x, y, pressed ? MouseButton.PRIMARY : MouseButton.NONE, 1,
+                false, false, false, false, pressed, false, false, false, false, false, null);
+        // The handler finds the stage through the source of the event
+        return event.copyFor(scene, scene);
+    }
+
+    /**
+     * Gets the focused property of a window as a writable property, so that focus changes can be
+     * simulated without a window manager.
+     */
+    private static ReadOnlyBooleanWrapper focusedWrapper(Window window) throws ReflectiveOperationException {
+        Field field = Window.class.getDeclaredField("focused");
+        field.setAccessible(true);
+        return (ReadOnlyBooleanWrapper) field.get(window);
+    }
+
+    private static StageButton findButton(StageButtons buttons, StageButtonType type) {
+        for (StageButton button : buttons.getButtons()) {
+            if (button.getType() == type) {
+                return button;
+            }
+        }
+        throw new IllegalStateException("There is no " + type + " button");
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.stage.Stage;
+
+/**
+ * Base class and helpers of the benchmarks.
+ *
+ * Each benchmark is a JavaFX application that runs its measurements on the JavaFX Application
+ * Thread (or on a thread of its own, see {@link #isAsynchronous()}), prints its results and exits
+ * with status 1 when a threshold is exceeded, so it can fail the build (see the
+ * {@code benchmark-*} targets of {@code build.xml}). The benchmarks live in their own source root
+ * and are not part of the library jar.
+ *
+ * By default they render with the software pipeline ({@code -Dprism.order=sw}), which still needs
+ * a display (on a server, run them under Xvfb). To run them without a display, put Monocle on the
+ * classpath and add {@code -Dglass.platform=Monocle -Dmonocle.platform=Headless} to the
+ * {@code benchmark.jvmargs} property.
+ *
+ * @author kleberkruger
+ */
+public abstract class Benchmarks extends Application {
+
+    private final List<String> failures = new ArrayList<>();
+
+    @Override
+    public final void start(Stage stage) {
+        if (isAsynchronous()) {
+            Thread thread = new Thread(this::execute, "Benchmark");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            execute();
+        }
+    }
+
+    private void execute() {
+        int status = 0;
+        try {
+            run();
+            for (String failure : failures) {
+                System.err.println("FAILED: " + failure);
+            }
+            status = failures.isEmpty() ? 0 : 1;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            status = 2;
+        } finally {
+            Platform.exit();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Runs the measurements, on the JavaFX Application Thread.
+     *
+     * @throws Exception if the benchmark cannot run
+     */
+    protected abstract void run() throws Exception;
+
+    /**
+     * Tells whether {@link #run()} is called from a thread of its own instead of the JavaFX
+     * Application Thread, so that it can wait for pulses and rendered frames. Such a benchmark
+     * uses {@link #onFxThread(Callable)} to touch the scene graph.
+     *
+     * @return {@code true} if the benchmark runs on its own thread
+     */
+    protected boolean isAsynchronous() {
+        return false;
+    }
+
+    /**
+     * Runs a task on the JavaFX Application Thread and waits for its result.
+     *
+     * @param <T> the type of the result
+     * @param task the task
+     *
+     * @return the result of the task
+     *
+     * @throws Exception if the task fails
+     */
+    protected static <T> T onFxThread(Callable<T> task) throws Exception {
+        if (Platform.isFxApplicationThread()) {
+            return task.call();
+        }
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    /**
+     * Gets a percentile of some values.
+     *
+     * @param values the values, sorted in ascending order
+     * @param percentile the percentile, from 0 to 100
+     *
+     * @return the value of the percentile, or NaN if there are no values
+     */
+    protected static double percentile(double[] values, double percentile) {
+        if (values.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile / 100 * values.length) - 1;
+        return values[Math.max(0, Math.min(values.length - 1, index))];
+    }
+
+    /**
+     * Records a failure if a measured value is above its threshold.
+     *
+     * @param name the name of the measurement
+     * @param value the measured value
+     * @param threshold the maximum accepted value
+     */
+    protected final void check(String name, double value, double threshold) {
+        if (value > threshold) {
+            failures.add(String.format("%s = %.1f exceeds %.1f", name, value, threshold));
+        }
+    }
+
+    /**
+     * Gets an integer parameter of the benchmark from the system properties.
+     *
+     * @param name the name of the property
+     * @param defaultValue the value used if the property is not set
+     *
+     * @return the parameter value
+     */
+    protected static int intParameter(String name, int defaultValue) {
+        return Integer.getInteger(name, defaultValue);
+    }
+
+    /**
+     * Gets a decimal parameter of the benchmark from the system properties.
+     *
+     * @param name the name of the property
+     * @param defaultValue the value used if the property is not set
+     *
+     * @return the parameter value
+     */
+    protected static double doubleParameter(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Runs an operation many times and prints its average time, allocation and the number of
+     * garbage collections it caused.
+     *
+     * @param name the name of the operation
+     * @param warmup the number of untimed runs, so that the JIT compiles the code first
+     * @param iterations the number of timed runs
+     * @param operation the operation
+     *
+     * @return the measurement
+     */
+    protected static Measurement measure(String name, int warmup, int iterations, Runnable operation) {
+        for (int i = 0; i < warmup; i++) {
+            operation.run();
+        }
+        long gcsBefore = collectionCount();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long gcs = collectionCount() - gcsBefore;
+
+        Measurement measurement = new Measurement(name, elapsed / (double) iterations,
+                allocated / (double) iterations, gcs);
+        System.out.println(measurement);
+        return measurement;
+    }
+
+    /**
+     * Gets the bytes allocated so far by the current thread.
+     *
+     * @return the allocated bytes, or 0 if the JVM cannot tell
+     */
+    protected static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Gets the used heap after a few garbage collections.
+     *
+     * @return the used heap, in bytes
+     */
+    protected static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Counts the nodes of a scene graph.
+     *
+     * @param node the root of the scene graph
+     *
+     * @return the number of nodes, including the root
+     */
+    protected static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        if (node.getClip() != null) {
+            count += countNodes(node.getClip());
+        }
+        return count;
+    }
+
+    /**
+     * Counts the listeners registered on an observable value.
+     *
+     * JavaFX keeps the listeners of its properties in a private {@code helper} field, so they are
+     * read through reflection; 0 is returned if the field cannot be read.
+     *
+     * @param observable the observable value
+     *
+     * @return the number of change and invalidation listeners
+     */
+    protected static int countListeners(ObservableValue<?> observable) {
+        Object helper = readField(observable, "helper");
+        if (helper == null) {
+            return 0;
+        }
+        Object changeSize = readField(helper, "changeSize");
+        Object invalidationSize = readField(helper, "invalidationSize");
+        if (changeSize instanceof Integer || invalidationSize instanceof Integer) {
+            return (changeSize instanceof Integer ? (Integer) changeSize : 0)
+                    + (invalidationSize instanceof Integer ? (Integer) invalidationSize : 0);
+        }
+        return 1; // SingleChange or SingleInvalidation helper
+    }
+
+    private static Object readField(Object target, String name) {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(target);
+            } catch (NoSuchFieldException ex) {
+                // Looks for the field in the super class
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The result of {@link #measure(String, int, int, Runnable)}.
+     */
+    protected static final class Measurement {
+
+        private final String name;
+        private final double nanosPerOperation;
+        private final double bytesPerOperation;
+        private final long collections;
+
+        Measurement(String name, double nanosPerOperation, double bytesPerOperation, long collections) {
+            this.name = name;
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+            this.collections = collections;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOperation() {
+            return nanosPerOperation;
+        }
+
+        public double getBytesPerOperation() {
+            return bytesPerOperation;
+        }
+
+        public long getCollections() {
+            return collections;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s;%.1f ns/op;%.1f B/op;%d gc", name, nanosPerOperation,
+                    bytesPerOperation, collections);
+        }
+    }
+}
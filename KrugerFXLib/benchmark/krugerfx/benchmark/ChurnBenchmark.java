@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+import krugerfx.scene.ShadedScene;
+import krugerfx.scene.ShadedSceneRegistry;
+import krugerfx.scene.control.StageButtons;
+
+/**
+ * Opens and closes thousands of shaded windows and checks that nothing is left behind.
+ *
+ * Each cycle creates a {@code ShadedScene} (with {@code StageButtons}), shows it on a stage,
+ * moves it to a second stage, shows it there and closes it. Two long-lived stages are reused by
+ * every cycle, as an application that swaps scenes on the same windows, and a few cycles use
+ * brand-new stages. At the end, the scenes must have been collected, the listeners on the
+ * long-lived stages must not have grown and the heap must be back near where it started.
+ *
+ * Parameters (system properties): {@code benchmark.churn.cycles} (default 2000),
+ * {@code benchmark.churn.maxRetained} (scenes still reachable at the end, default 1),
+ * {@code benchmark.churn.maxListenerGrowth} (default 0) and
+ * {@code benchmark.churn.maxHeapGrowth} (bytes, default 8388608).
+ *
+ * @author kleberkruger
+ */
+public class ChurnBenchmark extends Benchmarks {
+
+    private final int cycles = intParameter("benchmark.churn.cycles", 2000);
+    private final double maxRetained = doubleParameter("benchmark.churn.maxRetained", 1);
+    private final double maxListenerGrowth = doubleParameter("benchmark.churn.maxListenerGrowth", 0);
+    private final double maxHeapGrowth = doubleParameter("benchmark.churn.maxHeapGrowth", 8 * 1024 * 1024);
+
+    private final Stage first = new Stage();
+    private final Stage second = new Stage();
+
+    @Override
+    protected void run() {
+        List<WeakReference<ShadedScene>> scenes = new ArrayList<>(cycles);
+
+        // Warms up the classes and caches, so they do not count as growth
+        cycle(first, second);
+        cycle(new Stage(), new Stage());
+        int listenersBefore = countStageListeners();
+        long heapBefore = usedHeap();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < cycles; i++) {
+            boolean fresh = i % 10 == 0;
+            scenes.add(new WeakReference<>(fresh ? cycle(new Stage(), new Stage()) : cycle(first, second)));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long heapAfter = usedHeap();
+        int listenersAfter = countStageListeners();
+        int retained = 0;
+        for (WeakReference<ShadedScene> reference : scenes) {
+            if (reference.get() != null) {
+                retained++;
+            }
+        }
+
+        System.out.println(String.format("cycles=%d;cyclesPerSecond=%.1f;retainedScenes=%d;registeredScenes=%d;"
+                + "listenerGrowth=%d;heapGrowth=%d", cycles, cycles / seconds, retained,
+                ShadedSceneRegistry.getScenes().size(), listenersAfter - listenersBefore, heapAfter - heapBefore));
+        check("retained scenes", retained, maxRetained);
+        check("listener growth on reused stages", listenersAfter - listenersBefore, maxListenerGrowth);
+        check("heap growth", heapAfter - heapBefore, maxHeapGrowth);
+    }
+
+    private ShadedScene cycle(Stage stage, Stage other) {
+        BorderPane root = new BorderPane();
+        root.setTop(new StageButtons());
+        ShadedScene scene = new ShadedScene(root, 300, 200);
+
+        stage.setScene(scene);
+        stage.show();
+        stage.setX(stage.getX() + 1);
+        stage.hide();
+        stage.setScene(null);
+
+        other.setScene(scene);
+        other.show();
+        other.hide();
+        other.setScene(null);
+        return scene;
+    }
+
+    private int countStageListeners() {
+        int count = 0;
+        for (Stage stage : new Stage[]{first, second}) {
+            count += countListeners(stage.focusedProperty()) + countListeners(stage.xProperty())
+                    + countListeners(stage.yProperty()) + countListeners(stage.widthProperty())
+                    + countListeners(stage.heightProperty()) + countListeners(stage.showingProperty())
+                    + countListeners(stage.sceneProperty());
+        }
+        return count;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+import krugerfx.scene.ShadedScene;
+import krugerfx.scene.control.StageButtons;
+import krugerfx.scene.control.StageButtonsType;
+
+/**
+ * Measures how much one shaded window costs: retained heap, number of nodes (including the
+ * {@code ShadedRootContainer} background and shadow) and number of listeners on the
+ * stage and scene, for a plain root and for a root with {@code StageButtons} of each
+ * {@code StageButtonsType}.
+ *
+ * Parameters (system properties): {@code benchmark.footprint.windows} (default 100),
+ * {@code benchmark.footprint.maxBytes} (per window, default 262144),
+ * {@code benchmark.footprint.maxNodes} (per window, default 64) and
+ * {@code benchmark.footprint.maxListeners} (per window, default 12).
+ *
+ * @author kleberkruger
+ */
+public class FootprintBenchmark extends Benchmarks {
+
+    private final int windows = intParameter("benchmark.footprint.windows", 100);
+    private final double maxBytes = doubleParameter("benchmark.footprint.maxBytes", 256 * 1024);
+    private final double maxNodes = doubleParameter("benchmark.footprint.maxNodes", 64);
+    private final double maxListeners = doubleParameter("benchmark.footprint.maxListeners", 12);
+
+    @Override
+    protected void run() {
+        System.out.println("configuration;bytesPerWindow;nodesPerWindow;listenersPerWindow");
+        measure(null);
+        for (StageButtonsType type : StageButtonsType.values()) {
+            measure(type);
+        }
+    }
+
+    private void measure(StageButtonsType type) {
+        String name = type == null ? "ShadedScene" : "ShadedScene+StageButtons" + type;
+        List<Stage> stages = new ArrayList<>(windows);
+
+        long before = usedHeap();
+        for (int i = 0; i < windows; i++) {
+            stages.add(createWindow(type));
+        }
+        long after = usedHeap();
+
+        Stage sample = stages.get(0);
+        ShadedScene scene = (ShadedScene) sample.getScene();
+        double bytes = (after - before) / (double) windows;
+        int nodes = countNodes(scene.getRoot());
+        int listeners = countListeners(sample.focusedProperty()) + countListeners(sample.xProperty())
+                + countListeners(sample.yProperty()) + countListeners(sample.widthProperty())
+                + countListeners(sample.heightProperty()) + countListeners(sample.showingProperty())
+                + countListeners(scene.windowProperty()) + countListeners(scene.widthProperty())
+                + countListeners(scene.heightProperty());
+
+        System.out.println(String.format("%s;%.0f;%d;%d", name, bytes, nodes, listeners));
+        check(name + " bytes per window", bytes, maxBytes);
+        check(name + " nodes per window", nodes, maxNodes);
+        check(name + " listeners per window", listeners, maxListeners);
+
+        stages.forEach(Stage::hide);
+    }
+
+    private Stage createWindow(StageButtonsType type) {
+        BorderPane root = new BorderPane();
+        if (type != null) {
+            root.setTop(new StageButtons(type));
+        }
+        Stage stage = new Stage();
+        stage.setScene(new ShadedScene(root, 300, 200));
+        stage.show();
+        return stage;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
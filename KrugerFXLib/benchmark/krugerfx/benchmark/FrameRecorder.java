@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+
+/**
+ * Records the time of the pulses of the JavaFX Application Thread.
+ *
+ * The recorder runs at the beginning of every pulse. As a pulse waits for the rendering of the
+ * previous one, the interval between two pulses is the time spent to lay out and render a frame
+ * when pulses run at full speed ({@code -Djavafx.animation.fullspeed=true}). While recording, the
+ * opacity of a node is toggled, so that every pulse has something to render.
+ *
+ * @author kleberkruger
+ */
+class FrameRecorder extends AnimationTimer {
+
+    private final Node dirtyNode;
+    private final long[] times;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private int count;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param dirtyNode the node repainted on every pulse, may be null
+     * @param frames the number of pulses to record
+     */
+    FrameRecorder(Node dirtyNode, int frames) {
+        this.dirtyNode = dirtyNode;
+        this.times = new long[frames];
+    }
+
+    @Override
+    public void handle(long now) {
+        if (count < times.length) {
+            times[count++] = System.nanoTime();
+            if (dirtyNode != null) {
+                dirtyNode.setOpacity(dirtyNode.getOpacity() == 1.0 ? 0.99 : 1.0);
+            }
+        }
+        if (count == times.length) {
+            stop();
+            done.countDown();
+        }
+    }
+
+    /**
+     * Waits until all the pulses are recorded.
+     *
+     * @param timeout the maximum time to wait, in seconds
+     *
+     * @return {@code true} if all the pulses were recorded
+     *
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    boolean await(long timeout) throws InterruptedException {
+        return done.await(timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the time of a recorded pulse.
+     *
+     * @param index the index of the pulse
+     *
+     * @return the time of the pulse, in nanoseconds
+     */
+    long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Gets the intervals between the recorded pulses, skipping the first ones.
+     *
+     * @param skip the number of pulses to skip (warm-up)
+     *
+     * @return the sorted intervals, in milliseconds
+     */
+    double[] getIntervals(int skip) {
+        int from = Math.max(1, skip);
+        double[] intervals = new double[Math.max(0, count - from)];
+        for (int i = from; i < count; i++) {
+            intervals[i - from] = (times[i] - times[i - 1]) / 1e6;
+        }
+        Arrays.sort(intervals);
+        return intervals;
+    }
+}
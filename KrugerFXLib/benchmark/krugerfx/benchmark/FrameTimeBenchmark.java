@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+import krugerfx.scene.ShadedScene;
+import krugerfx.scene.control.StageButtons;
+
+/**
+ * Compares the rendering cost of a plain {@code Scene} and a {@code ShadedScene} with the same
+ * content, across window sizes and shadow radii.
+ *
+ * For each configuration it measures the time from {@code stage.show()} to the first rendered
+ * frame (the pulse after the first one, since a pulse waits for the previous frame to be
+ * rendered) and the percentiles of the pulse durations. The results are printed as
+ * semicolon-separated values, in milliseconds.
+ *
+ * Parameters (system properties): {@code benchmark.frames.count} (pulses per configuration,
+ * default 300), {@code benchmark.frames.warmup} (default 30) and {@code benchmark.frames.timeout}
+ * (seconds per configuration, default 60).
+ *
+ * @author kleberkruger
+ */
+public class FrameTimeBenchmark extends Benchmarks {
+
+    private static final double[][] SIZES = {{400, 300}, {1280, 800}, {1920, 1080}};
+    private static final double[] RADII = {5, 20, 40};
+
+    private final int frames = intParameter("benchmark.frames.count", 300);
+    private final int warmup = intParameter("benchmark.frames.warmup", 30);
+    private final int timeout = intParameter("benchmark.frames.timeout", 60);
+
+    @Override
+    protected boolean isAsynchronous() {
+        return true;
+    }
+
+    @Override
+    protected void run() throws Exception {
+        System.out.println("scene;width;height;radius;timeToFirstFrame;p50;p90;p99;max");
+        for (double[] size : SIZES) {
+            measure(size[0], size[1], -1);
+            for (double radius : RADII) {
+                measure(size[0], size[1], radius);
+            }
+        }
+    }
+
+    private void measure(double width, double height, double radius) throws Exception {
+        Stage stage = onFxThread(() -> new Stage());
+        FrameRecorder recorder = new FrameRecorder(null, 2);
+        FrameRecorder pulses = onFxThread(() -> {
+            Parent content = createContent();
+            Scene scene;
+            if (radius < 0) {
+                scene = new Scene(content, width, height);
+                stage.initStyle(StageStyle.UNDECORATED);
+            } else {
+                scene = new ShadedScene(content, width, height);
+                ((ShadedScene) scene).setShadowRadius(radius);
+            }
+            stage.setScene(scene);
+            return new FrameRecorder(scene.getRoot(), frames);
+        });
+
+        long shown = onFxThread(() -> {
+            long time = System.nanoTime();
+            stage.show();
+            recorder.start();
+            return time;
+        });
+        if (!recorder.await(timeout)) {
+            throw new IllegalStateException("No frame was rendered in " + timeout + " seconds");
+        }
+        double firstFrame = (recorder.getTime(1) - shown) / 1e6;
+
+        onFxThread(() -> {
+            pulses.start();
+            return null;
+        });
+        if (!pulses.await(timeout)) {
+            throw new IllegalStateException("Pulses did not run in " + timeout + " seconds");
+        }
+        double[] intervals = pulses.getIntervals(warmup);
+
+        System.out.println(String.format("%s;%.0f;%.0f;%.0f;%.3f;%.3f;%.3f;%.3f;%.3f",
+                radius < 0 ? "Scene" : "ShadedScene", width, height, Math.max(0, radius), firstFrame,
+                percentile(intervals, 50), percentile(intervals, 90), percentile(intervals, 99),
+                percentile(intervals, 100)));
+
+        onFxThread(() -> {
+            stage.hide();
+            return null;
+        });
+    }
+
+    private static Parent createContent() {
+        BorderPane root = new BorderPane();
+        HBox title = new HBox(new Label("Benchmark"), new StageButtons());
+        root.setTop(title);
+        root.setCenter(new TextArea("The same content is shown by every configuration."));
+        root.setBottom(new HBox(new Button("OK"), new Button("Cancel")));
+        return root;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
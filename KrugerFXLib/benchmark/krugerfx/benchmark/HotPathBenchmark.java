@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.scene.Parent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+import krugerfx.scene.ShadedScene;
+import krugerfx.scene.control.StageButtons;
+import krugerfx.scene.control.StageButtonsType;
+
+/**
+ * Measures the hot paths of the library: the layout of the shaded container, the resize handler
+ * fed with synthetic mouse events, shadow color and radius changes, the construction of
+ * {@code StageButtons} of each type and the style classes assigned by its skin when the type
+ * changes.
+ *
+ * Each operation prints its average time, allocation and garbage collections, as a baseline to
+ * compare performance changes against.
+ *
+ * Parameters (system properties): {@code benchmark.hotpath.warmup} (default 20000) and
+ * {@code benchmark.hotpath.iterations} (default 100000).
+ *
+ * @author kleberkruger
+ */
+public class HotPathBenchmark extends Benchmarks {
+
+    private final int warmup = intParameter("benchmark.hotpath.warmup", 20000);
+    private final int iterations = intParameter("benchmark.hotpath.iterations", 100000);
+
+    private int counter;
+
+    @Override
+    protected void run() {
+        BorderPane root = new BorderPane();
+        StageButtons buttons = new StageButtons();
+        root.setTop(buttons);
+        ShadedScene scene = new ShadedScene(root, 300, 200);
+        Stage stage = new Stage();
+        stage.setScene(scene);
+        stage.show();
+        Parent container = scene.getRoot();
+
+        measure("ShadedRootContainer.layoutChildren", warmup, iterations, () -> {
+            // Alternating sizes make every run lay out the children
+            container.resize(300 + (counter++ & 1), 200);
+            container.layout();
+        });
+
+        MouseEvent moved = mouseEvent(MouseEvent.MOUSE_MOVED, 2, 2);
+        MouseEvent center = mouseEvent(MouseEvent.MOUSE_MOVED, 150, 100);
+        measure("ResizeListener.handle", warmup, iterations, () -> {
+            Event.fireEvent(container, (counter++ & 1) == 0 ? moved : center);
+        });
+
+        measure("ShadedScene.setShadowColor", warmup, iterations, () -> {
+            scene.setShadowColor((counter++ & 1) == 0 ? Color.BLACK : Color.DARKGRAY);
+            container.layout();
+        });
+
+        measure("ShadedScene.setShadowRadius", warmup / 10, iterations / 10, () -> {
+            scene.setShadowRadius((counter++ & 1) == 0 ? 20 : 21);
+            container.layout();
+        });
+
+        for (StageButtonsType type : StageButtonsType.values()) {
+            measure("new StageButtons(" + type + ")", warmup / 10, iterations / 10, () -> {
+                new StageButtons(type);
+            });
+        }
+
+        StageButtonsType[] types = StageButtonsType.values();
+        measure("StageButtonsSkin style classes", warmup, iterations, () -> {
+            buttons.setType(types[counter++ % types.length]);
+        });
+
+        stage.hide();
+    }
+
+    private static MouseEvent mouseEvent(EventType<MouseEvent> type, double x, double y) {
+        return new MouseEvent(type, x, y, x, y, MouseButton.NONE, 0,
+                false, false, false, false, false, false, false, false, false, false, null);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+import krugerfx.scene.ShadedScene;
+
+/**
+ * Measures how fast a {@code ShadedScene} follows the mouse when it is resized or moved through
+ * its borders.
+ *
+ * Synthetic mouse sequences (move to a corner or edge, press and drag) are injected into the
+ * scene, each event as its own task of the JavaFX Application Thread, as native events are. For
+ * each drag event it measures the latency until the stage bounds change and until the frame that
+ * shows them (the second pulse after the event, since a pulse waits for the previous frame to be
+ * rendered), and counts the events that were applied, dropped (the bounds did not change) and
+ * coalesced (applied, but their bounds were changed again by a later event before the next pulse,
+ * so no frame showed them). Slow drags inject one event per pulse and fast drags several.
+ *
+ * Parameters (system properties): {@code benchmark.input.steps} (drag events per gesture, default
+ * 60), {@code benchmark.input.fastEvents} (events per pulse of fast drags, default 4) and
+ * {@code benchmark.input.maxFrameLatency} (p90 of the frame latency, in milliseconds, default
+ * 100).
+ *
+ * @author kleberkruger
+ */
+public class InputLatencyBenchmark extends Benchmarks {
+
+    private static final double WIDTH = 640;
+    private static final double HEIGHT = 480;
+    private static final double STEP = 2;
+
+    private final int steps = intParameter("benchmark.input.steps", 60);
+    private final int fastEvents = intParameter("benchmark.input.fastEvents", 4);
+    private final double maxFrameLatency = doubleParameter("benchmark.input.maxFrameLatency", 100);
+
+    // Pulses are counted under this lock, the waiting thread reads them with it
+    private final Object pulseLock = new Object();
+    private long pulseCount;
+    private long lastPulse;
+
+    // Used by the JavaFX Application Thread only
+    private long boundsChanged;
+    private Batch batch;
+
+    private Stage stage;
+    private ShadedScene scene;
+    private double initialWidth;
+    private double initialHeight;
+
+    @Override
+    protected boolean isAsynchronous() {
+        return true;
+    }
+
+    @Override
+    protected void run() throws Exception {
+        onFxThread(() -> {
+            scene = new ShadedScene(new BorderPane(), WIDTH, HEIGHT);
+            stage = new Stage();
+            stage.setScene(scene);
+            stage.show();
+            initialWidth = stage.getWidth();
+            initialHeight = stage.getHeight();
+            InvalidationListener boundsListener = (Observable observable) -> {
+                boundsChanged = System.nanoTime();
+            };
+            stage.xProperty().addListener(boundsListener);
+            stage.yProperty().addListener(boundsListener);
+            stage.widthProperty().addListener(boundsListener);
+            stage.heightProperty().addListener(boundsListener);
+            new AnimationTimer() {
+
+                @Override
+                public void handle(long now) {
+                    pulse(System.nanoTime());
+                }
+            }.start();
+            return null;
+        });
+
+        System.out.println("gesture;speed;applied;dropped;coalesced;boundsP50;boundsP90;frameP50;frameP90;frameMax");
+        for (Gesture gesture : Gesture.values()) {
+            measure(gesture, 1);
+            measure(gesture, fastEvents);
+        }
+    }
+
+    private void measure(Gesture gesture, int eventsPerPulse) throws Exception {
+        onFxThread(() -> {
+            stage.setX(200);
+            stage.setY(200);
+            stage.setWidth(initialWidth);
+            stage.setHeight(initialHeight);
+            return null;
+        });
+        waitPulses(2);
+
+        double width = onFxThread(() -> scene.getWidth());
+        double height = onFxThread(() -> scene.getHeight());
+        double x = gesture.dx < 0 ? 2 : gesture.dx > 0 ? width - 2 : width / 2;
+        double y = gesture.dy < 0 ? 2 : gesture.dy > 0 ? height - 2 : height / 2;
+        onFxThread(() -> {
+            fire(MouseEvent.MOUSE_MOVED, x, y, false);
+            fire(MouseEvent.MOUSE_PRESSED, x, y, true);
+            return null;
+        });
+
+        List<Double> boundsLatencies = new ArrayList<>();
+        List<Double> frameLatencies = new ArrayList<>();
+        int applied = 0;
+        int dropped = 0;
+        int coalesced = 0;
+        for (int step = 0; step < steps; step += eventsPerPulse) {
+            int count = Math.min(eventsPerPulse, steps - step);
+            Batch current = new Batch(count);
+            onFxThread(() -> {
+                batch = current;
+                return null;
+            });
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                double offset = (step + i + 1) * STEP;
+                Platform.runLater(() -> {
+                    double stageX = stage.getX();
+                    double stageY = stage.getY();
+                    boundsChanged = 0;
+                    current.sent[index] = System.nanoTime();
+                    // The handler reads screen coordinates to move the stage and scene ones to resize it
+                    fire(MouseEvent.MOUSE_DRAGGED, x + gesture.dx * offset, y + gesture.dy * offset, true,
+                            stageX + x + gesture.dx * offset, stageY + y + gesture.dy * offset);
+                    current.applied[index] = boundsChanged;
+                    current.pulse[index] = pulseCount;
+                });
+            }
+            // The events are run in order, so this waits for the last one
+            onFxThread(() -> null);
+            waitPulses(2);
+            onFxThread(() -> {
+                batch = null;
+                return null;
+            });
+            for (int i = 0; i < count; i++) {
+                if (current.applied[i] == 0) {
+                    dropped++;
+                    continue;
+                }
+                applied++;
+                boundsLatencies.add((current.applied[i] - current.sent[i]) / 1e6);
+                frameLatencies.add((current.frame[i] - current.sent[i]) / 1e6);
+                if (current.isOverwritten(i)) {
+                    coalesced++;
+                }
+            }
+        }
+        onFxThread(() -> {
+            fire(MouseEvent.MOUSE_RELEASED, x, y, false);
+            return null;
+        });
+
+        double[] bounds = sorted(boundsLatencies);
+        double[] frames = sorted(frameLatencies);
+        String name = gesture + ";" + (eventsPerPulse == 1 ? "slow" : "fast");
+        System.out.println(String.format("%s;%d;%d;%d;%.3f;%.3f;%.3f;%.3f;%.3f", name, applied, dropped,
+                coalesced, percentile(bounds, 50), percentile(bounds, 90), percentile(frames, 50),
+                percentile(frames, 90), percentile(frames, 100)));
+        check(name + " frame latency p90", frames.length == 0 ? 0 : percentile(frames, 90), maxFrameLatency);
+    }
+
+    private void fire(EventType<MouseEvent> type, double x, double y, boolean pressed) {
+        fire(type, x, y, pressed, stage.getX() + x, stage.getY() + y);
+    }
+
+    private void fire(EventType<MouseEvent> type, double x, double y, boolean pressed, double screenX, double screenY) {
+        Event.fireEvent(scene, new MouseEvent(type, x, y, screenX, screenY,
+                pressed ? MouseButton.PRIMARY : MouseButton.NONE, 1, false, false, false, false,
+                pressed, false, false, false, false, false, null));
+    }
+
+    /**
+     * Counts a pulse and gives its time to the events of the current batch whose frame it renders.
+     * Runs on the JavaFX Application Thread.
+     *
+     * @param now the time of the pulse
+     */
+    private void pulse(long now) {
+        synchronized (pulseLock) {
+            pulseCount++;
+            lastPulse = now;
+            if (batch != null) {
+                for (int i = 0; i < batch.frame.length; i++) {
+                    if (batch.applied[i] != 0 && batch.frame[i] == 0 && pulseCount == batch.pulse[i] + 2) {
+                        batch.frame[i] = now;
+                    }
+                }
+            }
+            pulseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for a number of pulses after the current time.
+     *
+     * @param count the number of pulses
+     *
+     * @return the time of the last of them
+     */
+    private long waitPulses(int count) throws InterruptedException {
+        synchronized (pulseLock) {
+            long target = pulseCount + count;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (pulseCount < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Pulses stopped running");
+                }
+                pulseLock.wait(remaining);
+            }
+            return lastPulse;
+        }
+    }
+
+    private static double[] sorted(List<Double> values) {
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * The drag events injected between two waits, and what happened to each of them.
+     */
+    private static final class Batch {
+
+        private final long[] sent;
+        private final long[] applied;
+        private final long[] pulse;
+        private final long[] frame;
+
+        Batch(int count) {
+            sent = new long[count];
+            applied = new long[count];
+            pulse = new long[count];
+            frame = new long[count];
+        }
+
+        /**
+         * Tells whether the bounds set by an event were set again by a later one before the next
+         * pulse, so that no frame showed them.
+         */
+        boolean isOverwritten(int index) {
+            for (int i = index + 1; i < applied.length; i++) {
+                if (applied[i] != 0) {
+                    return pulse[i] == pulse[index];
+                }
+            }
+            return false;
+        }
+    }
+
+    private enum Gesture {
+
+        CORNER_NW(-1, -1), CORNER_NE(1, -1), CORNER_SW(-1, 1), CORNER_SE(1, 1),
+        EDGE_N(0, -1), EDGE_S(0, 1), EDGE_W(-1, 0), EDGE_E(1, 0);
+
+        private final int dx;
+        private final int dy;
+
+        Gesture(int dx, int dy) {
+            this.dx = dx;
+            this.dy = dy;
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
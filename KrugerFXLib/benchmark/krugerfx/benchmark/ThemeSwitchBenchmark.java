@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.benchmark;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Parent;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+import krugerfx.scene.ShadedScene;
+import krugerfx.scene.ShadedSceneMetrics;
+import krugerfx.scene.control.StageButton;
+import krugerfx.scene.control.StageButtons;
+import krugerfx.scene.control.StageButtonsStyle;
+
+/**
+ * Checks how much work a {@code StageButtonsStyle} switch causes in the {@code StageButton}s.
+ *
+ * Every style gives the buttons another size through CSS. With {@code USE_PREF_SIZE} a size change
+ * is one pref width and one pref height change per button, while copying the pref size into the
+ * min and max sizes with listeners doubles that, and each of those changes asks the parent for a
+ * layout again. So the checks count, per button and per switch, the changes of the min, pref and
+ * max sizes and the times the button or its parent goes from laid out to needing a layout. The
+ * layout passes of the shaded container ({@link ShadedSceneMetrics}) are reported too; a second
+ * pulse after each switch must not lay out anything.
+ *
+ * Parameters (system properties): {@code benchmark.theme.rounds} (switches through every style,
+ * default 20), {@code benchmark.theme.maxSizeChanges} (per button and switch, default 2),
+ * {@code benchmark.theme.maxLayoutRequests} (per button and switch, default 2) and
+ * {@code benchmark.theme.maxSettlingPasses} (per switch, default 0).
+ *
+ * @author kleberkruger
+ */
+public class ThemeSwitchBenchmark extends Benchmarks {
+
+    private final int rounds = intParameter("benchmark.theme.rounds", 20);
+    private final double maxSizeChanges = doubleParameter("benchmark.theme.maxSizeChanges", 2);
+    private final double maxLayoutRequests = doubleParameter("benchmark.theme.maxLayoutRequests", 2);
+    private final double maxSettlingPasses = doubleParameter("benchmark.theme.maxSettlingPasses", 0);
+
+    private long sizeChanges;
+    private long layoutRequests;
+
+    @Override
+    protected void run() {
+        BorderPane root = new BorderPane();
+        StageButtons buttons = new StageButtons();
+        root.setTop(buttons);
+        ShadedScene scene = new ShadedScene(root, 300, 200);
+        Stage stage = new Stage();
+        stage.setScene(scene);
+        stage.show();
+        Parent container = scene.getRoot();
+        ShadedSceneMetrics metrics = scene.getMetrics();
+        pulse(container);
+
+        ChangeListener<Number> sizeListener = (ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> {
+            sizeChanges++;
+        };
+        ChangeListener<Boolean> needsLayoutListener = (ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) -> {
+            if (newValue) {
+                layoutRequests++;
+            }
+        };
+        for (StageButton button : buttons.getButtons()) {
+            button.minWidthProperty().addListener(sizeListener);
+            button.prefWidthProperty().addListener(sizeListener);
+            button.maxWidthProperty().addListener(sizeListener);
+            button.minHeightProperty().addListener(sizeListener);
+            button.prefHeightProperty().addListener(sizeListener);
+            button.maxHeightProperty().addListener(sizeListener);
+            button.needsLayoutProperty().addListener(needsLayoutListener);
+            button.getParent().needsLayoutProperty().addListener(needsLayoutListener);
+        }
+        int count = buttons.getButtons().size();
+
+        StageButtonsStyle[] styles = StageButtonsStyle.values();
+        long switches = 0;
+        long layoutPasses = 0;
+        long settlingPasses = 0;
+        double worstSizeChanges = 0;
+        double worstLayoutRequests = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (StageButtonsStyle style : styles) {
+                sizeChanges = 0;
+                layoutRequests = 0;
+                long before = metrics.getLayoutPasses();
+                buttons.setStageButtonsStyle(style);
+                pulse(container);
+                layoutPasses += metrics.getLayoutPasses() - before;
+                worstSizeChanges = Math.max(worstSizeChanges, sizeChanges / (double) count);
+                worstLayoutRequests = Math.max(worstLayoutRequests, layoutRequests / (double) count);
+
+                before = metrics.getLayoutPasses();
+                pulse(container);
+                settlingPasses += metrics.getLayoutPasses() - before;
+                switches++;
+            }
+        }
+        stage.hide();
+
+        System.out.println("switches;sizeChangesPerButton;layoutRequestsPerButton;layoutPassesPerSwitch;settlingPassesPerSwitch");
+        System.out.println(String.format("%d;%.2f;%.2f;%.2f;%.2f", switches, worstSizeChanges, worstLayoutRequests,
+                layoutPasses / (double) switches, settlingPasses / (double) switches));
+        check("size changes per button and style switch", worstSizeChanges, maxSizeChanges);
+        check("layout requests per button and style switch", worstLayoutRequests, maxLayoutRequests);
+        check("settling layout passes per style switch", settlingPasses / (double) switches, maxSettlingPasses);
+    }
+
+    /**
+     * Runs the CSS and layout steps of a pulse on a root.
+     */
+    private static void pulse(Parent root) {
+        root.applyCss();
+        root.layout();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.internal.jfr;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Java Flight Recorder event type of the library.
+ *
+ * The library is built for Java 8, which may not have the {@code jdk.jfr} API, so the event types
+ * are created at runtime through {@code jdk.jfr.EventFactory}, by reflection. When JFR is not
+ * available, or the event is not enabled in any recording, {@link #begin()} returns {@code null}
+ * and nothing else is done. Whether the event is enabled is asked to JFR (by reflection) at most
+ * once per second and cached in between, so the events cost a field read when they are not
+ * recorded, even on hot paths; an event enabled by a new recording is recorded within a second.
+ *
+ * <pre>
+ * Object event = EVENT.begin();
+ * ... // the measured operation
+ * EVENT.commit(event, value1, value2);
+ * </pre>
+ *
+ * @author kleberkruger
+ */
+public final class FlightRecorderEvent {
+
+    private static final String CATEGORY = "KrugerFX";
+
+    private static final Object[] NO_ARGUMENTS = {};
+
+    private static final long ENABLED_CHECK_INTERVAL = 1_000_000_000L;
+
+    private static final Reflection jfr = Reflection.load();
+
+    private final Object factory;
+    private final Object eventType;
+
+    private volatile boolean enabled;
+    private volatile long enabledCheckedAt;
+
+    /**
+     * Defines an event type.
+     *
+     * @param name the unique name of the event (e.g. {@code krugerfx.LayoutPass})
+     * @param label the label of the event
+     * @param description the description of the event
+     * @param enabled whether the event is recorded by default
+     * @param threshold the minimum duration of the recorded events (e.g. {@code "1 ms"}), or
+     * {@code null} to record them all
+     * @param fields the name and the type of each field, in pairs (e.g. {@code "width", double.class})
+     */
+    public FlightRecorderEvent(String name, String label, String description, boolean enabled,
+            String threshold, Object... fields) {
+        Object createdFactory = null;
+        Object createdType = null;
+        if (jfr != null) {
+            try {
+                List<Object> annotations = new ArrayList<>();
+                annotations.add(jfr.annotation("jdk.jfr.Name", name));
+                annotations.add(jfr.annotation("jdk.jfr.Label", label));
+                annotations.add(jfr.annotation("jdk.jfr.Description", description));
+                annotations.add(jfr.annotation("jdk.jfr.Category", new String[]{CATEGORY}));
+                annotations.add(jfr.annotation("jdk.jfr.Enabled", enabled));
+                annotations.add(jfr.annotation("jdk.jfr.StackTrace", false));
+                if (threshold != null) {
+                    annotations.add(jfr.annotation("jdk.jfr.Threshold", threshold));
+                }
+                List<Object> descriptors = new ArrayList<>();
+                for (int i = 0; i < fields.length; i += 2) {
+                    descriptors.add(jfr.valueDescriptor.newInstance(fields[i + 1], fields[i]));
+                }
+                createdFactory = jfr.create.invoke(null, annotations, descriptors);
+                createdType = jfr.getEventType.invoke(createdFactory, NO_ARGUMENTS);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                createdFactory = null;
+                createdType = null;
+            }
+        }
+        this.factory = createdFactory;
+        this.eventType = createdType;
+        this.enabledCheckedAt = System.nanoTime() - ENABLED_CHECK_INTERVAL;
+    }
+
+    /**
+     * Tells whether this event is being recorded. The answer may be up to a second old.
+     *
+     * @return {@code true} if a recording has this event enabled
+     */
+    public boolean isEnabled() {
+        if (eventType == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - enabledCheckedAt >= ENABLED_CHECK_INTERVAL) {
+            enabled = checkEnabled();
+            enabledCheckedAt = now;
+        }
+        return enabled;
+    }
+
+    private boolean checkEnabled() {
+        try {
+            return (Boolean) jfr.isEnabled.invoke(eventType, NO_ARGUMENTS);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts timing an event.
+     *
+     * @return the event, or {@code null} if it is not being recorded
+     */
+    public Object begin() {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            Object event = jfr.newEvent.invoke(factory, NO_ARGUMENTS);
+            jfr.begin.invoke(event, NO_ARGUMENTS);
+            return event;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends an event and commits it with its field values, if it lasted longer than the threshold.
+     *
+     * @param event the event returned by {@link #begin()}, may be {@code null}
+     * @param values the value of each field, in the order they were defined
+     */
+    public void commit(Object event, Object... values) {
+        if (event == null) {
+            return;
+        }
+        try {
+            jfr.end.invoke(event, NO_ARGUMENTS);
+            if ((Boolean) jfr.shouldCommit.invoke(event, NO_ARGUMENTS)) {
+                for (int i = 0; i < values.length; i++) {
+                    jfr.set.invoke(event, i, values[i]);
+                }
+                jfr.commit.invoke(event, NO_ARGUMENTS);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // The event is lost, but the recorded operation goes on
+        }
+    }
+
+    /**
+     * Commits an instant event (with no duration).
+     *
+     * @param values the value of each field, in the order they were defined
+     */
+    public void emit(Object... values) {
+        commit(begin(), values);
+    }
+
+    /**
+     * The {@code jdk.jfr} classes and methods, looked up once.
+     */
+    private static final class Reflection {
+
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+        private final Method create;
+        private final Method getEventType;
+        private final Method isEnabled;
+        private final Method newEvent;
+        private final Method begin;
+        private final Method end;
+        private final Method shouldCommit;
+        private final Method set;
+        private final Method commit;
+
+        private Reflection() throws ReflectiveOperationException {
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+            valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class);
+            create = factoryClass.getMethod("create", List.class, List.class);
+            getEventType = factoryClass.getMethod("getEventType");
+            isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+            newEvent = factoryClass.getMethod("newEvent");
+            begin = eventClass.getMethod("begin");
+            end = eventClass.getMethod("end");
+            shouldCommit = eventClass.getMethod("shouldCommit");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+        }
+
+        static Reflection load() {
+            try {
+                return new Reflection();
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError ex) {
+                return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Object annotation(String type, Object value) throws ReflectiveOperationException {
+            Class<? extends Annotation> annotationType = (Class<? extends Annotation>) Class.forName(type);
+            return annotationElement.newInstance(annotationType, value);
+        }
+    }
+}
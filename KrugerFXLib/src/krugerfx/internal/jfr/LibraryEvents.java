@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.internal.jfr;
+
+/**
+ * The Java Flight Recorder events of the library, shown in the "KrugerFX" category of a
+ * recording.
+ *
+ * Frequent events are disabled by default or have a threshold, so that a recording with the
+ * default settings only shows the slow ones; they can be enabled in a {@code .jfc} file.
+ *
+ * @author kleberkruger
+ */
+public final class LibraryEvents {
+
+    /**
+     * A resize or move gesture of a {@code ShadedScene}, from the mouse press to its release.
+     */
+    public static final FlightRecorderEvent WINDOW_GESTURE = new FlightRecorderEvent(
+            "krugerfx.WindowGesture", "Window Gesture",
+            "A shaded window resized or moved with the mouse", true, null,
+            "gesture", String.class, "eventCount", long.class, "boundsCommits", long.class);
+
+    /**
+     * A layout pass of the container of a {@code ShadedScene}.
+     */
+    public static final FlightRecorderEvent LAYOUT_PASS = new FlightRecorderEvent(
+            "krugerfx.LayoutPass", "Shaded Layout Pass",
+            "Layout of the container of a shaded scene", true, "1 ms",
+            "width", double.class, "height", double.class);
+
+    /**
+     * The shadow of a {@code ShadedScene} must be painted again.
+     */
+    public static final FlightRecorderEvent SHADOW_INVALIDATION = new FlightRecorderEvent(
+            "krugerfx.ShadowInvalidation", "Shadow Invalidation",
+            "The shadow of a shaded scene changed", false, null,
+            "reason", String.class);
+
+    /**
+     * A shadow image was rendered.
+     */
+    public static final FlightRecorderEvent SHADOW_RENDER = new FlightRecorderEvent(
+            "krugerfx.ShadowRender", "Shadow Render",
+            "A shadow image was rendered", true, "1 ms",
+            "source", String.class, "radius", double.class, "scale", double.class);
+
+    /**
+     * A window was minimized, maximized, restored or switched to (or from) full screen by a stage
+     * button.
+     */
+    public static final FlightRecorderEvent WINDOW_STATE = new FlightRecorderEvent(
+            "krugerfx.WindowState", "Window State Transition",
+            "Minimize, maximize, restore or full screen transition", true, null,
+            "transition", String.class);
+
+    private LibraryEvents() {
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.internal.scene.control;
+
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import krugerfx.scene.control.StageButtonsStyle;
+
+/**
+ * Resolves the stylesheets of the library controls once and caches their URLs.
+ *
+ * When the project is built with {@code javafx.binarycss=true} the stylesheets are shipped as
+ * precompiled {@code .bss} files and the {@code .css} sources are left out of the jar, so the
+ * binary version is looked up first and the text version is only a fallback (e.g. when running
+ * from the IDE).
+ *
+ * @author kleberkruger
+ */
+public final class Stylesheets {
+
+    private static final String BASE_PATH = "/krugerfx/internal/scene/control/";
+    private static final String THEMES_PATH = BASE_PATH + "themes/";
+
+    private static final Map<String, String> userAgentStylesheets = new ConcurrentHashMap<>();
+    private static final Map<StageButtonsStyle, String> themeStylesheets = new EnumMap<>(StageButtonsStyle.class);
+
+    private Stylesheets() {
+    }
+
+    /**
+     * Gets the user agent stylesheet of a control, named after its class and looked up through
+     * it, so a subclass can supply its own.
+     *
+     * @param type the control class
+     *
+     * @return the stylesheet URL
+     *
+     * @throws IllegalStateException if there is no stylesheet for this control
+     */
+    public static String getUserAgentStylesheet(Class<?> type) {
+        String url = userAgentStylesheets.get(type.getName());
+        if (url == null) {
+            url = resolve(type, BASE_PATH + type.getSimpleName());
+            if (url == null) {
+                throw new IllegalStateException("There is no stylesheet for " + type.getSimpleName());
+            }
+            userAgentStylesheets.put(type.getName(), url);
+        }
+        return url;
+    }
+
+    /**
+     * Gets the stylesheet that implements a {@code StageButtonsStyle} on top of the default
+     * {@code StageButtons} stylesheet.
+     *
+     * @param style the style
+     *
+     * @return the stylesheet URL or {@code null} if the style only uses the default stylesheet
+     */
+    public static String getStylesheet(StageButtonsStyle style) {
+        synchronized (themeStylesheets) {
+            if (!themeStylesheets.containsKey(style)) {
+                String fileName = getFileName(style);
+                themeStylesheets.put(style, fileName == null ? null : resolve(Stylesheets.class, THEMES_PATH + fileName));
+            }
+            return themeStylesheets.get(style);
+        }
+    }
+
+    private static String getFileName(StageButtonsStyle style) {
+        switch (style) {
+            case WINDOWS_XP:
+                return "windows-xp";
+            case WINDOWS_7:
+                return "windows-7";
+            case WINDOWS_8:
+                return "windows-8";
+            case WINDOWS_10:
+                return "windows-10";
+            case LINUX_GNONE:
+                return "linux-gnome";
+            case LINUX_KDE:
+                return "linux-kde";
+            case MAC_OS_MAVERICKS:
+                return "mac-os-mavericks";
+            case MAC_OS_MAVERICKS_GRAY:
+                return "mac-os-mavericks-gray";
+            case MAC_OS_YOSEMITE:
+                return "mac-os-yosemite";
+            case MAC_OS_YOSEMITE_GRAY:
+                return "mac-os-yosemite-gray";
+            default:
+                return null;
+        }
+    }
+
+    private static String resolve(Class<?> type, String path) {
+        URL url = type.getResource(path + ".bss");
+        if (url == null) {
+            url = type.getResource(path + ".css");
+        }
+        return url == null ? null : url.toExternalForm();
+    }
+}
@@ -17,6 +17,11 @@
 package krugerfx.internal.scene.control.skin;
 
 import com.sun.javafx.scene.control.skin.BehaviorSkinBase;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
 import javafx.scene.Node;
 import javafx.scene.layout.HBox;
@@ -31,12 +36,29 @@ import krugerfx.scene.control.StageButtons;
 public class StageButtonsSkin extends /* SkinBase<StageButtons> */
         BehaviorSkinBase<StageButtons, StageButtonsBehavior> {
 
+    private static final List<String> POSITION_STYLE_CLASSES = Arrays.asList("single", "left", "center", "right");
+
     private final HBox container = new HBox();
 
+    private final ListChangeListener<StageButton> buttonsListener = (Change<? extends StageButton> change) -> {
+        while (change.next()) {
+            if (change.wasRemoved()) {
+                for (StageButton button : change.getRemoved()) {
+                    if (!change.getList().contains(button)) {
+                        button.getStyleClass().removeAll(POSITION_STYLE_CLASSES);
+                    }
+                }
+            }
+        }
+        container.getChildren().setAll(getSkinnable().getButtons());
+        updateStyleClasses();
+    };
+
     public StageButtonsSkin(StageButtons control) {
         super(control, new StageButtonsBehavior(control));
         createUI();
-        addStyleClasses();
+        updateStyleClasses();
+        control.getButtons().addListener(buttonsListener);
     }
 
     private void createUI() {
@@ -45,19 +67,34 @@ public class StageButtonsSkin extends /* SkinBase<StageButtons> */
         getChildren().setAll(container);
     }
 
-    private void addStyleClasses() {
+    /**
+     * Gives each button the style class of its position (single, left, center or right). Buttons
+     * that keep their position are not touched, so a type change only restyles what has moved.
+     */
+    private void updateStyleClasses() {
         ObservableList<StageButton> buttons = getSkinnable().getButtons();
-        if (buttons.size() == 1) {
-            buttons.get(0).getStyleClass().add("single");
-        } else {
-            buttons.get(0).getStyleClass().add("left");
-            for (int i = 1; i < buttons.size() - 1; i++) {
-                buttons.get(i).getStyleClass().add("center");
-            }
-            buttons.get(buttons.size() - 1).getStyleClass().add("right");
+        int last = buttons.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            String styleClass = last == 0 ? "single" : i == 0 ? "left" : i == last ? "right" : "center";
+            setPositionStyleClass(buttons.get(i), styleClass);
         }
     }
 
+    private void setPositionStyleClass(StageButton button, String styleClass) {
+        ObservableList<String> styleClasses = button.getStyleClass();
+        if (styleClasses.contains(styleClass)) {
+            return;
+        }
+        styleClasses.removeAll(POSITION_STYLE_CLASSES);
+        styleClasses.add(styleClass);
+    }
+
+    @Override
+    public void dispose() {
+        getSkinnable().getButtons().removeListener(buttonsListener);
+        super.dispose();
+    }
+
     @Override
     protected double computeMinWidth(double height, double topInset, double rightInset,
             double bottomInset, double leftInset) {
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.internal.stage;
+
+import java.lang.reflect.Method;
+
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Screen;
+import javafx.stage.Window;
+
+/**
+ * Finds out the scale used to render a window on its current screen (e.g. 2.0 on a HiDPI
+ * monitor).
+ *
+ * JavaFX 8 has no public API for this, so the {@code getOutputScaleX()} method of newer versions
+ * is looked up once by reflection. On JavaFX 8 the scale of the screen that shows the window is
+ * read from the private {@code Screen.getRenderScale()} method that its HiDPI support uses; when
+ * neither is available every window renders at 1.0.
+ *
+ * @author kleberkruger
+ */
+public final class RenderScale {
+
+    private static final Method WINDOW_OUTPUT_SCALE = findMethod(Window.class, "getOutputScaleX");
+    private static final Method SCREEN_OUTPUT_SCALE = findScreenScaleMethod();
+    private static final Method WINDOW_OUTPUT_SCALE_PROPERTY = findMethod(Window.class, "outputScaleXProperty");
+
+    private RenderScale() {
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static Method findScreenScaleMethod() {
+        Method method = findMethod(Screen.class, "getOutputScaleX");
+        if (method != null) {
+            return method;
+        }
+        try {
+            // JavaFX 8 keeps the render scale of each screen in a private field with this getter
+            method = Screen.class.getDeclaredMethod("getRenderScale");
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static double invoke(Method method, Object target) {
+        if (method != null && target != null) {
+            try {
+                double scale = ((Number) method.invoke(target)).doubleValue();
+                if (scale > 0) {
+                    return scale;
+                }
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Falls back to the default scale
+            }
+        }
+        return 1.0;
+    }
+
+    /**
+     * Gets the render scale of a window.
+     *
+     * @param window the window, may be {@code null}
+     *
+     * @return the render scale or 1.0 if it is unknown
+     */
+    public static double of(Window window) {
+        if (window == null) {
+            return 1.0;
+        }
+        if (WINDOW_OUTPUT_SCALE != null) {
+            return invoke(WINDOW_OUTPUT_SCALE, window);
+        }
+        if (SCREEN_OUTPUT_SCALE != null && !Double.isNaN(window.getX())) {
+            ObservableList<Screen> screens = Screen.getScreensForRectangle(
+                    window.getX(), window.getY(), Math.max(1, window.getWidth()), Math.max(1, window.getHeight()));
+            return invoke(SCREEN_OUTPUT_SCALE, screens.isEmpty() ? Screen.getPrimary() : screens.get(0));
+        }
+        return 1.0;
+    }
+
+    /**
+     * Gets the property that holds the render scale of a window, to be notified when the window
+     * moves to a screen with another scale.
+     *
+     * @param window the window
+     *
+     * @return the property, or {@code null} if this version of JavaFX has none (the scale can then
+     * only change when the window moves to another screen)
+     */
+    public static ObservableValue<?> propertyOf(Window window) {
+        if (WINDOW_OUTPUT_SCALE_PROPERTY != null && window != null) {
+            try {
+                return (ObservableValue<?>) WINDOW_OUTPUT_SCALE_PROPERTY.invoke(window);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Falls back to following the position of the window
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the render scale of a screen.
+     *
+     * @param screen the screen
+     *
+     * @return the render scale or 1.0 if it is unknown
+     */
+    public static double of(Screen screen) {
+        return SCREEN_OUTPUT_SCALE == null ? 1.0 : invoke(SCREEN_OUTPUT_SCALE, screen);
+    }
+
+    /**
+     * Gets the render scale of the window that shows a node.
+     *
+     * @param node the node
+     *
+     * @return the render scale or 1.0 if the node is not showing
+     */
+    public static double of(Node node) {
+        Scene scene = node.getScene();
+        return scene == null ? 1.0 : of(scene.getWindow());
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import javafx.css.PseudoClass;
+import javafx.event.EventHandler;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.stage.Window;
+
+/**
+ * Lets the user drag panels from one window and dock them into another (or into another place of
+ * the same window).
+ *
+ * During the drag the panel is not moved: it is represented by a snapshot shown in a transparent
+ * {@link ShadedPopup} (the ghost) that follows the mouse, and the drop targets are located once,
+ * when the gesture starts. The panel is reparented only when it is dropped, so dragging it causes
+ * no CSS or layout pass on the windows involved. The drop target under the mouse has the
+ * {@code :dock-target} pseudo class.
+ *
+ * <pre>
+ * DockManager docks = new DockManager();
+ * docks.addDropTarget(leftArea);
+ * docks.addDropTarget(otherWindowArea);
+ * docks.makeDraggable(panel, panelTitleBar);
+ * </pre>
+ *
+ * The manager must be used from the JavaFX Application Thread.
+ *
+ * @author kleberkruger
+ */
+public class DockManager {
+
+    private static final PseudoClass DOCK_TARGET_PSEUDOCLASS = PseudoClass.getPseudoClass("dock-target");
+
+    private static final double DRAG_THRESHOLD = 4;
+    private static final double GHOST_OPACITY = 0.8;
+
+    private final List<Pane> targets = new ArrayList<>();
+
+    private final ImageView ghostImage = new ImageView();
+    private final ShadedPopup ghost = new ShadedPopup(ghostImage, null, ShadedScene.DEFAULT_SHADOW_COLOR,
+            ShadedScene.DEFAULT_SHADOW_RADIUS);
+
+    private BiConsumer<Node, Pane> onDocked;
+    private BiConsumer<Node, Point2D> onTornOut;
+
+    /**
+     * Creates a manager without drop targets.
+     */
+    public DockManager() {
+        ghostImage.setMouseTransparent(true);
+        ghostImage.setOpacity(GHOST_OPACITY);
+        ghost.setAutoFix(false);
+    }
+
+    /**
+     * Adds a pane where panels can be dropped. A dropped panel is added at the end of its children.
+     *
+     * @param target the pane
+     *
+     * @throws NullPointerException if target is null
+     */
+    public void addDropTarget(Pane target) {
+        if (target == null) {
+            throw new NullPointerException("Target cannot be null");
+        }
+        if (!targets.contains(target)) {
+            targets.add(target);
+        }
+    }
+
+    /**
+     * Removes a drop target.
+     *
+     * @param target the pane
+     */
+    public void removeDropTarget(Pane target) {
+        targets.remove(target);
+    }
+
+    /**
+     * Makes a panel draggable by a handle (e.g. its title bar). The panel must be a child of a
+     * {@code Pane} or a {@code Group}.
+     *
+     * @param panel the panel
+     * @param handle the node that starts the drag, may be the panel itself
+     *
+     * @throws NullPointerException if panel or handle is null
+     */
+    public void makeDraggable(Node panel, Node handle) {
+        if (panel == null) {
+            throw new NullPointerException("Panel cannot be null");
+        } else if (handle == null) {
+            throw new NullPointerException("Handle cannot be null");
+        }
+        Gesture gesture = new Gesture(panel);
+        handle.addEventHandler(MouseEvent.MOUSE_PRESSED, gesture);
+        handle.addEventHandler(MouseEvent.MOUSE_DRAGGED, gesture);
+        handle.addEventHandler(MouseEvent.MOUSE_RELEASED, gesture);
+        handle.getProperties().put(DockManager.class, gesture);
+    }
+
+    /**
+     * Stops a handle from dragging its panel.
+     *
+     * @param handle the handle
+     */
+    public void removeDraggable(Node handle) {
+        Object gesture = handle.getProperties().remove(DockManager.class);
+        if (gesture instanceof Gesture) {
+            handle.removeEventHandler(MouseEvent.MOUSE_PRESSED, (Gesture) gesture);
+            handle.removeEventHandler(MouseEvent.MOUSE_DRAGGED, (Gesture) gesture);
+            handle.removeEventHandler(MouseEvent.MOUSE_RELEASED, (Gesture) gesture);
+        }
+    }
+
+    /**
+     * Sets the action called after a panel is docked into a target.
+     *
+     * @param action the action, receiving the panel and the target, may be null
+     */
+    public void setOnDocked(BiConsumer<Node, Pane> action) {
+        onDocked = action;
+    }
+
+    /**
+     * Sets the action called when a panel is dropped outside of every target, e.g. to show it in a
+     * new window. The panel is removed from its parent before the action is called. If there is no
+     * action, the panel stays where it was.
+     *
+     * @param action the action, receiving the panel and the screen position of its top left
+     * corner, may be null
+     */
+    public void setOnTornOut(BiConsumer<Node, Point2D> action) {
+        onTornOut = action;
+    }
+
+    private static void removeFromParent(Node node) {
+        Parent parent = node.getParent();
+        if (parent instanceof Pane) {
+            ((Pane) parent).getChildren().remove(node);
+        } else if (parent instanceof Group) {
+            ((Group) parent).getChildren().remove(node);
+        }
+    }
+
+    private static boolean isInside(Node node, Node ancestor) {
+        for (Node n = node; n != null; n = n.getParent()) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The state of the drag of a panel.
+     */
+    private final class Gesture implements EventHandler<MouseEvent> {
+
+        private final Node panel;
+
+        private double pressX;
+        private double pressY;
+        private double offsetX;
+        private double offsetY;
+        private boolean dragging;
+
+        private final List<Pane> gestureTargets = new ArrayList<>();
+        private final List<Bounds> gestureBounds = new ArrayList<>();
+        private Pane hovered;
+
+        Gesture(Node panel) {
+            this.panel = panel;
+        }
+
+        @Override
+        public void handle(MouseEvent event) {
+            if (event.getButton() != MouseButton.PRIMARY) {
+                return;
+            }
+            if (event.getEventType() == MouseEvent.MOUSE_PRESSED) {
+                pressX = event.getScreenX();
+                pressY = event.getScreenY();
+                dragging = false;
+            } else if (event.getEventType() == MouseEvent.MOUSE_DRAGGED) {
+                if (!dragging && Math.abs(event.getScreenX() - pressX) < DRAG_THRESHOLD
+                        && Math.abs(event.getScreenY() - pressY) < DRAG_THRESHOLD) {
+                    return;
+                }
+                if (!dragging) {
+                    start();
+                }
+                move(event.getScreenX(), event.getScreenY());
+                event.consume();
+            } else if (event.getEventType() == MouseEvent.MOUSE_RELEASED && dragging) {
+                finish(event.getScreenX(), event.getScreenY());
+                event.consume();
+            }
+        }
+
+        private void start() {
+            Scene scene = panel.getScene();
+            Bounds bounds = panel.localToScreen(panel.getBoundsInLocal());
+            if (scene == null || bounds == null) {
+                return;
+            }
+            dragging = true;
+            offsetX = pressX - bounds.getMinX();
+            offsetY = pressY - bounds.getMinY();
+
+            SnapshotParameters params = new SnapshotParameters();
+            params.setFill(Color.TRANSPARENT);
+            ghostImage.setImage(panel.snapshot(params, null));
+
+            // The targets are located once: windows do not move while the mouse is dragging
+            gestureTargets.clear();
+            gestureBounds.clear();
+            for (Pane target : targets) {
+                Window window = target.getScene() == null ? null : target.getScene().getWindow();
+                Bounds screenBounds = target.localToScreen(target.getLayoutBounds());
+                if (window != null && window.isShowing() && screenBounds != null && target.isVisible()
+                        && !isInside(target, panel)) {
+                    gestureTargets.add(target);
+                    gestureBounds.add(screenBounds);
+                }
+            }
+
+            double d = ghost.getShadowRadius();
+            ghost.show(scene.getWindow(), bounds.getMinX() - d, bounds.getMinY() - d);
+        }
+
+        private void move(double screenX, double screenY) {
+            if (!dragging) {
+                return;
+            }
+            double d = ghost.getShadowRadius();
+            ghost.setX(screenX - offsetX - d);
+            ghost.setY(screenY - offsetY - d);
+
+            Pane target = findTarget(screenX, screenY);
+            if (target != hovered) {
+                if (hovered != null) {
+                    hovered.pseudoClassStateChanged(DOCK_TARGET_PSEUDOCLASS, false);
+                }
+                hovered = target;
+                if (hovered != null) {
+                    hovered.pseudoClassStateChanged(DOCK_TARGET_PSEUDOCLASS, true);
+                }
+            }
+        }
+
+        /**
+         * Gets the innermost target under a point of the screen. The focused window is preferred
+         * when windows overlap.
+         */
+        private Pane findTarget(double screenX, double screenY) {
+            Pane found = null;
+            double foundArea = Double.MAX_VALUE;
+            boolean foundFocused = false;
+            for (int i = 0; i < gestureTargets.size(); i++) {
+                Bounds bounds = gestureBounds.get(i);
+                if (!bounds.contains(screenX, screenY)) {
+                    continue;
+                }
+                Pane target = gestureTargets.get(i);
+                boolean focused = target.getScene().getWindow().isFocused();
+                double area = bounds.getWidth() * bounds.getHeight();
+                if (found == null || (focused && !foundFocused) || (focused == foundFocused && area < foundArea)) {
+                    found = target;
+                    foundArea = area;
+                    foundFocused = focused;
+                }
+            }
+            return found;
+        }
+
+        private void finish(double screenX, double screenY) {
+            dragging = false;
+            ghost.hide();
+            ghostImage.setImage(null);
+            Pane target = hovered;
+            if (hovered != null) {
+                hovered.pseudoClassStateChanged(DOCK_TARGET_PSEUDOCLASS, false);
+                hovered = null;
+            }
+            gestureTargets.clear();
+            gestureBounds.clear();
+
+            if (target != null) {
+                if (panel.getParent() != target) {
+                    removeFromParent(panel);
+                    target.getChildren().add(panel);
+                }
+                if (onDocked != null) {
+                    onDocked.accept(panel, target);
+                }
+            } else if (onTornOut != null) {
+                removeFromParent(panel);
+                onTornOut.accept(panel, new Point2D(screenX - offsetX, screenY - offsetY));
+            }
+        }
+    }
+}
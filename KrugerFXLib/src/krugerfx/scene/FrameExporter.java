@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.transform.Transform;
+
+/**
+ * Exports the content of a {@link ShadedScene} (without the shadow margin) as a stream of frames
+ * in a memory-mapped file, so that another local process (a recorder, a remote assistance tool)
+ * can read them without sockets, encoding or extra copies.
+ *
+ * The file is a ring buffer of frames. The exporter is driven by a background timer, so it does
+ * not make JavaFX pulse on its own, and it only takes a snapshot of a scene laid out again since
+ * the last frame (or marked with {@link #invalidate()}). On the JavaFX Application Thread it only
+ * takes that snapshot into a reused image and reads its pixels into a reused array; comparing the
+ * frame with the previous one and writing it are done by a background thread. Only the rectangle
+ * that changed is written, and nothing at all if the frame did not change. If the background
+ * thread falls behind, frames are dropped instead of queued.
+ *
+ * <h3>File layout</h3>
+ * All numbers are little endian. The file starts with a 64 bytes header:
+ * <pre>
+ *  0  int   magic (0x4B465846, "KFXF")
+ *  4  int   version (1)
+ *  8  int   number of slots
+ * 12  int   size of a slot, in bytes
+ * 16  int   maximum frame width
+ * 20  int   maximum frame height
+ * 24  long  sequence number of the last frame written (0 if none)
+ * </pre>
+ * followed by the slots, whose sequence numbers are cleared when the file is opened. Frame {@code n} (starting at 1) is in slot {@code (n - 1) % slots}, which
+ * starts with a 64 bytes header:
+ * <pre>
+ *  0  long  sequence number of the frame (0 while the slot is being written)
+ *  8  long  timestamp, in nanoseconds ({@code System.nanoTime()} of the snapshot)
+ * 16  int   frame width
+ * 20  int   frame height
+ * 24  int   x, y, width and height of the dirty rectangle (4 ints)
+ * 40  int   flags (1 = key frame: the dirty rectangle is the whole frame)
+ * </pre>
+ * followed by the pixels of the dirty rectangle, row by row, in premultiplied BGRA (4 bytes per
+ * pixel, no padding). A reader applies the dirty rectangles in order on its own copy of the
+ * frame, starting from a key frame; a key frame is written at least once every half ring, so a
+ * reader that falls behind can always start again. A slot is valid if its sequence number is the
+ * same before and after its pixels are read.
+ *
+ * Frames larger than the maximum size are scaled down to fit. The exporter must be started and
+ * stopped from the JavaFX Application Thread.
+ *
+ * @author kleberkruger
+ */
+public class FrameExporter implements Closeable {
+
+    /**
+     * The magic number at the start of the file.
+     */
+    public static final int MAGIC = 0x4B465846;
+
+    /**
+     * The version of the file layout.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The flag of the frames that hold the whole image.
+     */
+    public static final int KEY_FRAME = 1;
+
+    private static final int FILE_HEADER = 64;
+    private static final int SLOT_HEADER = 64;
+    private static final int SEQUENCE_OFFSET = 24;
+
+    private final ShadedScene scene;
+    private final int slots;
+    private final int slotSize;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final long frameInterval;
+    private final int keyFrameInterval;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final BlockingQueue<int[]> free = new ArrayBlockingQueue<>(2);
+    // Writes the frames and also schedules the snapshots, which then wait for a busy writer
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "FrameExporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean capturePending = new AtomicBoolean();
+
+    // Used by the JavaFX Application Thread only
+    private final SnapshotParameters params = new SnapshotParameters();
+    private WritableImage image;
+    private ScheduledFuture<?> ticks;
+    private long capturedLayoutPasses = -1;
+
+    // Used by the writer thread only
+    private int[] previous;
+    private int previousWidth;
+    private int previousHeight;
+    private long sequence;
+    private long lastKeyFrame;
+
+    /**
+     * Creates an exporter of the content of a scene, with frames of at most 1920x1080 pixels, up
+     * to 30 frames per second, in a ring of 8 frames.
+     *
+     * @param scene the scene
+     * @param file the file, created if it does not exist
+     *
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public FrameExporter(ShadedScene scene, Path file) throws IOException {
+        this(scene, file, 1920, 1080, 30, 8);
+    }
+
+    /**
+     * Creates an exporter of the content of a scene.
+     *
+     * @param scene the scene
+     * @param file the file, created if it does not exist
+     * @param maxWidth the maximum width of a frame
+     * @param maxHeight the maximum height of a frame
+     * @param framesPerSecond the maximum number of frames per second
+     * @param slots the number of frames in the ring
+     *
+     * @throws NullPointerException if scene or file is null
+     * @throws IllegalArgumentException if a size, the frame rate or the number of slots is not
+     * positive, or if the file would be larger than 2 GB
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public FrameExporter(ShadedScene scene, Path file, int maxWidth, int maxHeight, int framesPerSecond,
+            int slots) throws IOException {
+        if (scene == null) {
+            throw new NullPointerException("Scene cannot be null");
+        } else if (file == null) {
+            throw new NullPointerException("File cannot be null");
+        } else if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive");
+        } else if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        } else if (slots <= 0) {
+            throw new IllegalArgumentException("Number of slots must be positive");
+        }
+        long size = SLOT_HEADER + (long) maxWidth * maxHeight * 4;
+        if (FILE_HEADER + size * slots > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Frame ring cannot be larger than 2 GB");
+        }
+        this.scene = scene;
+        this.slots = slots;
+        this.slotSize = (int) size;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.frameInterval = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        this.keyFrameInterval = Math.max(1, slots / 2);
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER + (long) slotSize * slots);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.putLong(SEQUENCE_OFFSET, 0);
+        this.buffer.putInt(0, MAGIC);
+        this.buffer.putInt(4, VERSION);
+        this.buffer.putInt(8, slots);
+        this.buffer.putInt(12, slotSize);
+        this.buffer.putInt(16, maxWidth);
+        this.buffer.putInt(20, maxHeight);
+        // A file of a previous session would still show its frames as valid
+        for (int i = 0; i < slots; i++) {
+            this.buffer.putLong(FILE_HEADER + i * slotSize, 0);
+        }
+
+        // Two frames may be on their way to the writer while it keeps the previous one
+        free.add(new int[maxWidth * maxHeight]);
+        free.add(new int[maxWidth * maxHeight]);
+        previous = new int[maxWidth * maxHeight];
+    }
+
+    /**
+     * Starts exporting frames.
+     */
+    public void start() {
+        if (ticks == null) {
+            ticks = writer.scheduleAtFixedRate(() -> {
+                // At most one snapshot waits for the JavaFX Application Thread
+                if (capturePending.compareAndSet(false, true)) {
+                    Platform.runLater(this::tick);
+                }
+            }, 0, frameInterval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops exporting frames. The file keeps the last ones.
+     */
+    public void stop() {
+        if (ticks != null) {
+            ticks.cancel(false);
+            ticks = null;
+        }
+    }
+
+    /**
+     * Makes the next frame be taken even if the scene was not laid out again (e.g. when only
+     * colors changed). It must be called from the JavaFX Application Thread.
+     */
+    public void invalidate() {
+        capturedLayoutPasses = -1;
+    }
+
+    /**
+     * Stops exporting frames, waits for the last ones to be written and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * @return the number of frames written to the file
+     */
+    public long getExportedFrames() {
+        return exported.get();
+    }
+
+    /**
+     * @return the number of frames dropped because the writer was busy
+     */
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+
+    private void tick() {
+        capturePending.set(false);
+        if (ticks == null) {
+            return;
+        }
+        // A scene that was not laid out again since the last frame shows the same pixels
+        long layoutPasses = scene.getMetrics().getLayoutPasses();
+        if (layoutPasses != capturedLayoutPasses && capture(System.nanoTime())) {
+            capturedLayoutPasses = layoutPasses;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the scene and hands it to the writer.
+     *
+     * @param now the timestamp of the frame
+     *
+     * @return {@code true} if the frame was taken, {@code false} if the scene is not showing or
+     * the frame was dropped
+     */
+    private boolean capture(long now) {
+        Parent root = scene.getRoot_();
+        double width = root.getLayoutBounds().getWidth();
+        double height = root.getLayoutBounds().getHeight();
+        if (width <= 0 || height <= 0 || scene.getWindow() == null || !scene.getWindow().isShowing()) {
+            return false;
+        }
+        int[] pixels = free.poll();
+        if (pixels == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        double scale = Math.min(1, Math.min(maxWidth / width, maxHeight / height));
+        int w = (int) Math.min(maxWidth, Math.max(1, Math.ceil(width * scale)));
+        int h = (int) Math.min(maxHeight, Math.max(1, Math.ceil(height * scale)));
+        params.setTransform(scale == 1 ? null : Transform.scale(scale, scale));
+        Paint fill = scene.getFill_();
+        params.setFill(fill == null ? Color.TRANSPARENT : fill);
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            image = new WritableImage(w, h);
+        }
+        image = root.snapshot(params, image);
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0, w);
+
+        writer.execute(() -> {
+            write(pixels, w, h, now);
+        });
+        return true;
+    }
+
+    private void write(int[] pixels, int width, int height, long timestamp) {
+        try {
+            boolean keyFrame = previousWidth != width || previousHeight != height
+                    || sequence - lastKeyFrame >= keyFrameInterval;
+            int x0 = 0;
+            int y0 = 0;
+            int x1 = width;
+            int y1 = height;
+            if (!keyFrame) {
+                // Bounding box of the pixels that changed
+                x0 = width;
+                y0 = height;
+                x1 = 0;
+                y1 = 0;
+                for (int y = 0; y < height; y++) {
+                    int row = y * width;
+                    int left = 0;
+                    while (left < width && pixels[row + left] == previous[row + left]) {
+                        left++;
+                    }
+                    if (left == width) {
+                        continue;
+                    }
+                    int right = width;
+                    while (pixels[row + right - 1] == previous[row + right - 1]) {
+                        right--;
+                    }
+                    x0 = Math.min(x0, left);
+                    x1 = Math.max(x1, right);
+                    y0 = Math.min(y0, y);
+                    y1 = y + 1;
+                }
+                if (x0 >= x1) {
+                    return;
+                }
+            }
+
+            long seq = ++sequence;
+            int slot = FILE_HEADER + (int) ((seq - 1) % slots) * slotSize;
+            int dirtyWidth = x1 - x0;
+            buffer.putLong(slot, 0);
+            buffer.putLong(slot + 8, timestamp);
+            buffer.putInt(slot + 16, width);
+            buffer.putInt(slot + 20, height);
+            buffer.putInt(slot + 24, x0);
+            buffer.putInt(slot + 28, y0);
+            buffer.putInt(slot + 32, dirtyWidth);
+            buffer.putInt(slot + 36, y1 - y0);
+            buffer.putInt(slot + 40, keyFrame ? KEY_FRAME : 0);
+
+            // A little endian view of ARGB ints is BGRA bytes
+            buffer.position(slot + SLOT_HEADER);
+            IntBuffer out = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            for (int y = y0; y < y1; y++) {
+                out.put(pixels, y * width + x0, dirtyWidth);
+            }
+
+            buffer.putLong(slot, seq);
+            buffer.putLong(SEQUENCE_OFFSET, seq);
+            if (keyFrame) {
+                lastKeyFrame = seq;
+            }
+            exported.incrementAndGet();
+        } finally {
+            // The frame becomes the previous one and the previous array is reused
+            int[] recycled = previous;
+            previous = pixels;
+            previousWidth = width;
+            previousHeight = height;
+            free.add(recycled);
+        }
+    }
+}
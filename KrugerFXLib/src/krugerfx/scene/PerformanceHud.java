@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import com.sun.javafx.perf.PerformanceTracker;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * An overlay that shows how a {@link ShadedScene} is performing: frames rendered per second, a
+ * histogram of the intervals between rendered frames, layout passes per second, shadow renders and
+ * the window mode.
+ *
+ * The frames are the ones the graphics pipeline actually rendered for the scene (reported by its
+ * {@code PerformanceTracker}), not pulses: the overlay has no animation of its own, which would
+ * make JavaFX run a pulse on every frame. It is a single {@code Canvas}, drawn again four times
+ * per second from a background timer and not taking part in the layout; those redraws are the
+ * only frames it adds, and they are included in the count.
+ *
+ * @author kleberkruger
+ */
+final class PerformanceHud extends Canvas {
+
+    private static final double WIDTH = 220;
+    private static final double HEIGHT = 132;
+    private static final long REFRESH_INTERVAL_MILLIS = 250;
+
+    /**
+     * Upper limits of the histogram buckets, in milliseconds.
+     */
+    private static final double[] BUCKETS = {8, 17, 34, 50, 100, Double.MAX_VALUE};
+    private static final String[] BUCKET_LABELS = {"<8", "<17", "<34", "<50", "<100", "100+"};
+
+    private static final Font FONT = Font.font("Monospaced", 11);
+    private static final Color BACKGROUND = Color.rgb(0, 0, 0, 0.7);
+    private static final Color FOREGROUND = Color.rgb(220, 255, 220);
+    private static final Color BAR = Color.rgb(120, 200, 120);
+
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "PerformanceHud");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ShadedScene scene;
+
+    // Updated by the render thread
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length);
+    private final AtomicLong frames = new AtomicLong();
+    private volatile long lastFrame;
+
+    // Used by the JavaFX Application Thread only
+    private final long[] counts = new long[BUCKETS.length];
+    private PerformanceTracker tracker;
+    private ScheduledFuture<?> refresh;
+    private long lastRefresh;
+    private long layoutPasses;
+
+    PerformanceHud(ShadedScene scene) {
+        super(WIDTH, HEIGHT);
+        this.scene = scene;
+        setMouseTransparent(true);
+        setManaged(false);
+        setCache(true);
+    }
+
+    /**
+     * Starts collecting the numbers. Does nothing if they are already being collected.
+     */
+    void start() {
+        if (refresh != null) {
+            return;
+        }
+        lastFrame = 0;
+        frames.set(0);
+        lastRefresh = System.nanoTime();
+        layoutPasses = scene.getMetrics().getLayoutPasses();
+        tracker = PerformanceTracker.getSceneTracker(scene);
+        tracker.setOnRenderedFrameTask(this::frameRendered);
+        refresh = refresher.scheduleAtFixedRate(() -> {
+            Platform.runLater(this::refresh);
+        }, REFRESH_INTERVAL_MILLIS, REFRESH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops collecting the numbers, releasing the scene.
+     */
+    void stop() {
+        if (refresh == null) {
+            return;
+        }
+        refresh.cancel(false);
+        refresh = null;
+        tracker.setOnRenderedFrameTask(null);
+        PerformanceTracker.releaseSceneTracker(scene);
+        tracker = null;
+    }
+
+    /**
+     * Called by the render thread after a frame of the scene was rendered.
+     */
+    private void frameRendered() {
+        long now = System.nanoTime();
+        long last = lastFrame;
+        if (last != 0) {
+            double interval = (now - last) / 1e6;
+            int bucket = 0;
+            while (interval >= BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+        frames.incrementAndGet();
+        lastFrame = now;
+    }
+
+    private void refresh() {
+        if (refresh == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        double seconds = (now - lastRefresh) / 1e9;
+        long passes = scene.getMetrics().getLayoutPasses();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.getAndSet(i, 0);
+        }
+        draw(frames.getAndSet(0) / seconds, (passes - layoutPasses) / seconds);
+        layoutPasses = passes;
+        lastRefresh = now;
+    }
+
+    private void draw(double fps, double layoutsPerSecond) {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, WIDTH, HEIGHT);
+        gc.setFill(BACKGROUND);
+        gc.fillRoundRect(0, 0, WIDTH, HEIGHT, 8, 8);
+
+        ShadedSceneMetrics metrics = scene.getMetrics();
+        gc.setFont(FONT);
+        gc.setFill(FOREGROUND);
+        gc.fillText(String.format("FPS %.1f   mode %s", fps, getWindowMode()), 8, 16);
+        gc.fillText(String.format("layouts/s %.1f", layoutsPerSecond), 8, 30);
+        gc.fillText("shadow renders " + metrics.getShadowRenders()
+                + "  inval " + metrics.getShadowInvalidations(), 8, 44);
+
+        long max = 1;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+        double barWidth = (WIDTH - 16) / counts.length;
+        for (int i = 0; i < counts.length; i++) {
+            double x = 8 + i * barWidth;
+            double height = 50 * counts[i] / (double) max;
+            gc.setFill(BAR);
+            gc.fillRect(x + 2, 108 - height, barWidth - 4, height);
+            gc.setFill(FOREGROUND);
+            gc.fillText(BUCKET_LABELS[i], x + 2, 124);
+        }
+    }
+
+    private String getWindowMode() {
+        if (scene.isIconified()) {
+            return "iconified";
+        } else if (scene.isFullScreen()) {
+            return "fullscreen";
+        } else if (scene.isMaximized()) {
+            return "maximized";
+        }
+        return "normal";
+    }
+}
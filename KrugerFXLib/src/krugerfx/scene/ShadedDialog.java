@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+import krugerfx.internal.stage.RenderScale;
+
+/**
+ * A modal {@code Stage} with the look of a {@link ShadedScene}.
+ *
+ * Like {@link ShadedPopup}, the shadow is a pre-rendered image shared with every other dialog and
+ * popup that uses the same settings, and the content is placed
+ * {@link #getShadowRadius() shadow radius} pixels inside the window bounds.
+ *
+ * @author kleberkruger
+ */
+public class ShadedDialog extends Stage {
+
+    private final ShadowPane pane;
+
+    /**
+     * Creates a ShadedDialog, modal to its owner, for a specific content.
+     *
+     * @param owner the owner of the dialog, may be null
+     * @param content the content of the dialog
+     *
+     * @throws NullPointerException if content is null
+     */
+    public ShadedDialog(Window owner, Parent content) {
+        this(owner, content, ShadedScene.DEFAULT_FILL, ShadedScene.DEFAULT_SHADOW_COLOR,
+                ShadedScene.DEFAULT_SHADOW_RADIUS);
+    }
+
+    /**
+     * Creates a ShadedDialog, modal to its owner, for a specific content with a fill, a shadow color
+     * and a shadow radius.
+     *
+     * @param owner the owner of the dialog, may be null
+     * @param content the content of the dialog
+     * @param fill the fill
+     * @param shadowColor the color of the shadow
+     * @param shadowRadius the radius of the shadow
+     *
+     * @throws NullPointerException if content is null
+     * @throws IllegalArgumentException if shadow radius value is out of the range 0.0 - 127.0
+     */
+    public ShadedDialog(Window owner, Parent content, Paint fill, Color shadowColor, double shadowRadius) {
+        super(StageStyle.TRANSPARENT);
+        pane = new ShadowPane(content, fill, shadowColor, shadowRadius);
+        if (owner != null) {
+            initOwner(owner);
+            initModality(Modality.WINDOW_MODAL);
+        } else {
+            initModality(Modality.APPLICATION_MODAL);
+        }
+        setScene(new Scene(pane, Color.TRANSPARENT));
+
+        focusedProperty().addListener((ObservableValue<? extends Boolean> observable, Boolean oldFocused, Boolean newFocused) -> {
+            pane.setShaded(newFocused);
+        });
+        addEventHandler(WindowEvent.WINDOW_SHOWING, (WindowEvent event) -> {
+            pane.setScale(RenderScale.of(owner));
+            ShadowPane.shareStylesheets(getScene(), owner);
+        });
+    }
+
+    /**
+     * @return the content of the dialog
+     */
+    public final Parent getContent() {
+        return (Parent) pane.getContent();
+    }
+
+    /**
+     * @param content the content of the dialog
+     */
+    public final void setContent(Parent content) {
+        pane.setContent(content);
+    }
+
+    /**
+     * @return the fill behind the content
+     */
+    public final Paint getFill() {
+        return pane.getFill();
+    }
+
+    /**
+     * @param fill the fill behind the content
+     */
+    public final void setFill(Paint fill) {
+        pane.setFill(fill);
+    }
+
+    /**
+     * @return the color of the shadow
+     */
+    public final Color getShadowColor() {
+        return pane.getShadowColor();
+    }
+
+    /**
+     * @param color the color of the shadow
+     */
+    public final void setShadowColor(Color color) {
+        pane.setShadowColor(color);
+    }
+
+    /**
+     * @return the radius of the shadow
+     */
+    public final double getShadowRadius() {
+        return pane.getShadowRadius();
+    }
+
+    /**
+     * @param radius the radius of the shadow
+     */
+    public final void setShadowRadius(double radius) {
+        pane.setShadowRadius(radius);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.stage.Popup;
+import javafx.stage.WindowEvent;
+
+import krugerfx.internal.stage.RenderScale;
+
+/**
+ * A {@code Popup} with the look of a {@link ShadedScene}, meant for tooltips, context menus,
+ * autocompletion lists and other short-lived windows.
+ *
+ * The shadow is a pre-rendered image shared by every {@code ShadedPopup} and {@link ShadedDialog}
+ * with the same settings, so opening a popup does not render a new {@code DropShadow}. The content
+ * is placed {@link #getShadowRadius() shadow radius} pixels inside the popup bounds.
+ *
+ * @author kleberkruger
+ */
+public class ShadedPopup extends Popup {
+
+    private final ShadowPane pane;
+
+    /**
+     * Creates a ShadedPopup for a specific content.
+     *
+     * @param content the content of the popup
+     *
+     * @throws NullPointerException if content is null
+     */
+    public ShadedPopup(Node content) {
+        this(content, ShadedScene.DEFAULT_FILL, ShadedScene.DEFAULT_SHADOW_COLOR, ShadedScene.DEFAULT_SHADOW_RADIUS);
+    }
+
+    /**
+     * Creates a ShadedPopup for a specific content with a fill, a shadow color and a shadow radius.
+     *
+     * @param content the content of the popup
+     * @param fill the fill
+     * @param shadowColor the color of the shadow
+     * @param shadowRadius the radius of the shadow
+     *
+     * @throws NullPointerException if content is null
+     * @throws IllegalArgumentException if shadow radius value is out of the range 0.0 - 127.0
+     */
+    public ShadedPopup(Node content, Paint fill, Color shadowColor, double shadowRadius) {
+        pane = new ShadowPane(content, fill, shadowColor, shadowRadius);
+        getContent().setAll(pane);
+        addEventHandler(WindowEvent.WINDOW_SHOWING, (WindowEvent event) -> {
+            pane.setScale(RenderScale.of(getOwnerWindow()));
+            ShadowPane.shareStylesheets(getScene(), getOwnerWindow());
+        });
+    }
+
+    /**
+     * @return the content of the popup
+     */
+    public final Node getContentNode() {
+        return pane.getContent();
+    }
+
+    /**
+     * @param content the content of the popup
+     */
+    public final void setContentNode(Node content) {
+        pane.setContent(content);
+    }
+
+    /**
+     * @return the fill behind the content
+     */
+    public final Paint getFill() {
+        return pane.getFill();
+    }
+
+    /**
+     * @param fill the fill behind the content
+     */
+    public final void setFill(Paint fill) {
+        pane.setFill(fill);
+    }
+
+    /**
+     * @return the color of the shadow
+     */
+    public final Color getShadowColor() {
+        return pane.getShadowColor();
+    }
+
+    /**
+     * @param color the color of the shadow
+     */
+    public final void setShadowColor(Color color) {
+        pane.setShadowColor(color);
+    }
+
+    /**
+     * @return the radius of the shadow
+     */
+    public final double getShadowRadius() {
+        return pane.getShadowRadius();
+    }
+
+    /**
+     * @param radius the radius of the shadow
+     */
+    public final void setShadowRadius(double radius) {
+        pane.setShadowRadius(radius);
+    }
+}
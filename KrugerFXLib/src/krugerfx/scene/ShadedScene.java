@@ -16,8 +16,14 @@
  */
 package krugerfx.scene;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javafx.application.ConditionalFeature;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
@@ -29,21 +35,36 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
+import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
-import javafx.scene.effect.DropShadow;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
+import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.Window;
+import javafx.util.Duration;
+
+import krugerfx.internal.jfr.LibraryEvents;
+import krugerfx.internal.stage.RenderScale;
+import krugerfx.scene.control.StageButtonGlyphs;
+import krugerfx.scene.control.StageButtons;
+import krugerfx.scene.control.StageButtonsStyle;
+import krugerfx.scene.control.StageButtonsType;
 
 /**
  *
@@ -51,9 +72,19 @@ import javafx.stage.Window;
  */
 public class ShadedScene extends Scene {
 
-    private static final Paint DEFAULT_FILL = Color.WHITE;
-    private static final Color DEFAULT_SHADOW_COLOR = Color.BLACK;
-    private static final double DEFAULT_SHADOW_RADIUS = 20;
+    static final Paint DEFAULT_FILL = Color.WHITE;
+    static final Color DEFAULT_SHADOW_COLOR = Color.BLACK;
+    static final double DEFAULT_SHADOW_RADIUS = 20;
+
+    private static final int PREWARM_LAYOUTS = 200;
+
+    private static volatile Boolean transparentWindowSupported;
+
+    /**
+     * The key combination that shows or hides the performance overlay (Shortcut+Shift+F12).
+     */
+    public static final KeyCombination PERFORMANCE_HUD_SHORTCUT = new KeyCodeCombination(KeyCode.F12,
+            KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
 
     private final ShadedRootContainer container;
 
@@ -61,6 +92,19 @@ public class ShadedScene extends Scene {
 
     private Stage stage;
 
+    // The render scale of the window is followed through its output scale property when there is
+    // one (newer JavaFX versions), otherwise through its position, checked against its screen
+    private final InvalidationListener renderScaleListener = (Observable observable) -> {
+        renderScaleChanged();
+    };
+    private ObservableValue<?> renderScaleProperty;
+    private Rectangle2D screenBounds;
+
+    // The performance overlay only collects its numbers while the window is showing
+    private final InvalidationListener showingListener = (Observable observable) -> {
+        updatePerformanceHud();
+    };
+
     //<editor-fold defaultstate="collapsed" desc="Public Constructors">
     /**
      * Creates a ShadedScene for a specific root Node.
@@ -190,12 +234,61 @@ public class ShadedScene extends Scene {
         super(container, width, height, Color.TRANSPARENT);
         this.container = container;
 
+        checkTransparentWindowSupport();
         initialize();
     }
 
+    /**
+     * Creates the root container of a scene. Unlike the scene itself, the container can be
+     * created on any thread, as done by {@link ShadedSceneBuilder}.
+     *
+     * @param root the root node of the scene graph
+     * @param fill the fill
+     * @param shadowColor the color of the shadow
+     * @param shadowRadius the radius of the shadow
+     *
+     * @return the container, to be passed to {@link #create(Region, double, double)}
+     */
+    static Region createContainer(Parent root, Paint fill, Color shadowColor, double shadowRadius) {
+        return new ShadedRootContainer(root, fill, shadowColor, shadowRadius);
+    }
+
+    /**
+     * Creates a scene for a container built by {@link #createContainer(Parent, Paint, Color, double)}.
+     *
+     * @param container the root container
+     * @param width the width of the root, or -1 to use its preferred width
+     * @param height the height of the root, or -1 to use its preferred height
+     *
+     * @return the scene
+     */
+    static ShadedScene create(Region container, double width, double height) {
+        ShadedRootContainer c = (ShadedRootContainer) container;
+        double d = c.getShadowColor() == null ? 0 : c.getShadowRadius() * 2;
+        return new ShadedScene(c, width < 0 ? width : width + d, height < 0 ? height : height + d);
+    }
+
+    /**
+     * Checks that the platform supports transparent windows, asking it only once.
+     *
+     * @throws RuntimeException if platform does not support transparent window
+     */
+    private static void checkTransparentWindowSupport() {
+        Boolean supported = transparentWindowSupported;
+        if (supported == null) {
+            supported = Platform.isSupported(ConditionalFeature.TRANSPARENT_WINDOW);
+            transparentWindowSupported = supported;
+        }
+        if (!supported) {
+            throw new RuntimeException("This platform does not support transparent window to create the shadow effect");
+        }
+    }
+
     private void initialize() {
         addDefaultListeners();
+        addPerformanceHudShortcut();
         setResizable(true);
+        ShadedSceneRegistry.register(this);
     }
 
     private void addDefaultListeners() {
@@ -222,7 +315,20 @@ public class ShadedScene extends Scene {
     }
 
     private void addWindowListener() {
+        // The listeners added to the stage (the focus listener shared by every scene, the render
+        // scale listener and the showing listener) are moved along with the scene, so swapping scenes on a stage never
+        // accumulates handlers
         windowProperty().addListener((ObservableValue<? extends Window> observable, Window oldWindow, Window newWindow) -> {
+            if (oldWindow != null) {
+                ShadedSceneRegistry.untrackFocus(oldWindow);
+                untrackRenderScale(oldWindow);
+                oldWindow.showingProperty().removeListener(showingListener);
+            }
+            if (newWindow != null) {
+                trackRenderScale(newWindow);
+                newWindow.showingProperty().addListener(showingListener);
+            }
+            updatePerformanceHud();
             if (newWindow instanceof Stage) {
                 stage = (Stage) newWindow;
                 stageChanged(stage);
@@ -232,6 +338,57 @@ public class ShadedScene extends Scene {
         });
     }
 
+    private void trackRenderScale(Window window) {
+        renderScaleProperty = RenderScale.propertyOf(window);
+        if (renderScaleProperty != null) {
+            renderScaleProperty.addListener(renderScaleListener);
+        } else {
+            window.xProperty().addListener(renderScaleListener);
+            window.yProperty().addListener(renderScaleListener);
+        }
+        screenBounds = null;
+        renderScaleChanged();
+        container.updateShadow();
+    }
+
+    private void untrackRenderScale(Window window) {
+        if (renderScaleProperty != null) {
+            renderScaleProperty.removeListener(renderScaleListener);
+            renderScaleProperty = null;
+        } else {
+            window.xProperty().removeListener(renderScaleListener);
+            window.yProperty().removeListener(renderScaleListener);
+        }
+    }
+
+    /**
+     * Gives the container the render scale of the window, so that it shows the shadow rendered
+     * for it. The content is not laid out again.
+     */
+    private void renderScaleChanged() {
+        Window window = getWindow();
+        if (window == null) {
+            return;
+        }
+        if (renderScaleProperty != null) {
+            container.setRenderScale(RenderScale.of(window));
+            return;
+        }
+        if (Double.isNaN(window.getX()) || Double.isNaN(window.getY())) {
+            return;
+        }
+        double centerX = window.getX() + window.getWidth() / 2;
+        double centerY = window.getY() + window.getHeight() / 2;
+        // Moving the window inside the same screen only costs this check
+        if (screenBounds != null && screenBounds.contains(centerX, centerY)) {
+            return;
+        }
+        List<Screen> screens = Screen.getScreensForRectangle(centerX, centerY, 1, 1);
+        Screen screen = screens.isEmpty() ? Screen.getPrimary() : screens.get(0);
+        screenBounds = screen.getBounds();
+        container.setRenderScale(RenderScale.of(screen));
+    }
+
     private void addShadowRadiusListener() {
         shadowRadiusProperty().addListener((ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> {
             Window window = getWindow();
@@ -244,13 +401,24 @@ public class ShadedScene extends Scene {
         });
     }
 
+    private void addPerformanceHudShortcut() {
+        addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent event) -> {
+            if (PERFORMANCE_HUD_SHORTCUT.match(event)) {
+                setPerformanceHudVisible(!isPerformanceHudVisible());
+                event.consume();
+            }
+        });
+    }
+
     private void stageChanged(Stage stage) {
-        if (!stage.isShowing()) {
+        // A stage that has been shown cannot change its style, but a reused one is already transparent
+        if (!stage.isShowing() && stage.getStyle() != StageStyle.TRANSPARENT) {
             stage.initStyle(StageStyle.TRANSPARENT);
         }
-        stage.focusedProperty().addListener((ObservableValue<? extends Boolean> observable, Boolean oldFocused, Boolean newFocused) -> {
-            container.setShaded(newFocused);
-        });
+        ShadedSceneRegistry.trackFocus(stage);
+        if (isMaximized() && restoreBounds == null) {
+            maximizeStage();
+        }
         // TODO: Melhorar esta parte! Ideia: Tem evento pendente? Se tiver, dispare-o.
         if (shadowRadiusChanged != 0) {
             ajustStageBounds(shadowRadiusChanged);
@@ -268,6 +436,94 @@ public class ShadedScene extends Scene {
         }
     }
 
+    /**
+     * Brings this scene back to a clean state so it can be shown again with another root, as done
+     * by {@link ShadedStagePool}.
+     *
+     * @param placeholder the root that replaces the current one, releasing it
+     * @param fill the fill
+     * @param shadowColor the color of the shadow
+     * @param shadowRadius the radius of the shadow
+     */
+    void reset(Parent placeholder, Paint fill, Color shadowColor, double shadowRadius) {
+        container.setRoot(placeholder);
+        container.setFill(fill);
+        container.setShadowColor(shadowColor);
+        container.setShadowRadius(shadowRadius);
+        container.setShaded(false);
+        setCursor(Cursor.DEFAULT);
+        if (maximized != null) {
+            maximized.set(false);
+        }
+        restoreBounds = null;
+    }
+
+    /**
+     * Warms up the library with the default shadow and stage buttons style. See
+     * {@link #prewarm(Color, double, StageButtonsStyle...)}.
+     *
+     * @return how long it took
+     *
+     * @throws IllegalStateException if it is not called on the JavaFX Application Thread
+     */
+    public static Duration prewarm() {
+        return prewarm(DEFAULT_SHADOW_COLOR, DEFAULT_SHADOW_RADIUS, StageButtonsStyle.SIMPLE);
+    }
+
+    /**
+     * Warms up the library so that the first window opens as fast as the next ones. It can be
+     * called while a splash screen is shown.
+     *
+     * An offscreen {@code ShadedScene} with {@code StageButtons} in each style is created, styled,
+     * laid out a number of times (so that the JIT compiles the layout code) and rendered to an
+     * image (so that the graphics pipeline is set up). The stylesheets, the glyphs of the buttons
+     * and the shadow images of windows, popups and dialogs are cached along the way. The scene is
+     * left out of {@link ShadedSceneRegistry} and of the global {@link ShadedSceneMetrics}.
+     *
+     * @param shadowColor the color of the shadow the application will use
+     * @param shadowRadius the radius of the shadow the application will use
+     * @param styles the styles of stage buttons the application will use
+     *
+     * @return how long it took
+     *
+     * @throws IllegalStateException if it is not called on the JavaFX Application Thread
+     */
+    public static Duration prewarm(Color shadowColor, double shadowRadius, StageButtonsStyle... styles) {
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("ShadedScene must be prewarmed on the JavaFX Application Thread");
+        }
+        final long start = System.nanoTime();
+        final double scale = RenderScale.of(Screen.getPrimary());
+
+        BorderPane root = new BorderPane();
+        StageButtons buttons = new StageButtons(StageButtonsType.CLOSE_MINIMIZE_MAXIMIZE_FULLSCREEN);
+        root.setTop(buttons);
+        // The scene is not part of the application: its work is not counted in the global metrics
+        // and bulk operations or thumbnails do not see it
+        double d = shadowColor == null ? 0 : shadowRadius * 2;
+        ShadedScene scene = new ShadedScene(new ShadedRootContainer(root, DEFAULT_FILL, shadowColor,
+                shadowRadius, ShadedSceneMetrics.createDetached()), 400 + d, 300 + d);
+        try {
+            Parent container = scene.getRoot();
+
+            for (StageButtonsStyle style : styles) {
+                buttons.setStageButtonsStyle(style);
+                container.applyCss();
+                StageButtonGlyphs.getAtlas(style, scale);
+            }
+            for (int i = 0; i < PREWARM_LAYOUTS; i++) {
+                container.resize(400 + i % 2, 300);
+                container.layout();
+            }
+            scene.snapshot(null);
+        } finally {
+            ShadedSceneRegistry.unregister(scene);
+        }
+        ShadowImages.getShadowBorder(shadowColor, shadowRadius, 0, scale);
+
+        return Duration.millis((System.nanoTime() - start) / 1e6);
+    }
+
     //<editor-fold defaultstate="collapsed" desc="Getters and Setters">
     /**
      * Sets the root {@code Node} of the scene graph. If a {@code Group} is used as the root, the
@@ -410,6 +666,20 @@ public class ShadedScene extends Scene {
         return container.shadedProperty();
     }
 
+    final void setShaded(boolean value) {
+        container.setShaded(value);
+    }
+
+    /**
+     * Gets the metrics of this scene: layout passes, shadow invalidations, shadow updates and
+     * resize events. Every count is also added to {@link ShadedSceneMetrics#getGlobal()}.
+     *
+     * @return the metrics of this scene
+     */
+    public final ShadedSceneMetrics getMetrics() {
+        return container.metrics;
+    }
+
     /**
      * OK!!!
      *
@@ -436,14 +706,68 @@ public class ShadedScene extends Scene {
     }
 
     private ReadOnlyBooleanWrapper maximized;
+    private BoundingBox restoreBounds;
 
+    /**
+     * Maximizes the window, or restores it. A transparent stage maximized by the system would put
+     * its shadow off the screen, so the stage is moved to cover the visual bounds of its screen
+     * with the shadow outside of them, and moved back to its previous bounds when restored. This
+     * is what the maximize buttons of {@link StageButtons} do.
+     *
+     * The maximized state changes before the stage moves, so that listeners of the stage bounds
+     * (e.g. {@link WindowStateStore}) know the new bounds are not the normal ones.
+     *
+     * @param value {@code true} to maximize the window
+     */
     public final void setMaximized(boolean value) {
+        if (value == isMaximized()) {
+            return;
+        }
         maximizedPropertyImpl().set(value);
         if (stage != null) {
-            // TODO: Implementar a ação de maximizar
+            if (value) {
+                maximizeStage();
+            } else if (restoreBounds != null) {
+                BoundingBox bounds = restoreBounds;
+                restoreBounds = null;
+                if (!Double.isNaN(bounds.getMinX()) && !Double.isNaN(bounds.getMinY())) {
+                    stage.setX(bounds.getMinX());
+                    stage.setY(bounds.getMinY());
+                }
+                stage.setWidth(bounds.getWidth());
+                stage.setHeight(bounds.getHeight());
+            }
         }
     }
 
+    private void maximizeStage() {
+        Screen screen = Screen.getPrimary();
+        if (!Double.isNaN(stage.getX()) && !Double.isNaN(stage.getY())) {
+            List<Screen> screens = Screen.getScreensForRectangle(stage.getX(), stage.getY(),
+                    Math.max(1, stage.getWidth()), Math.max(1, stage.getHeight()));
+            screen = screens.isEmpty() ? screen : screens.get(0);
+        }
+        Rectangle2D visualBounds = screen.getVisualBounds();
+        double d = getShadowRadius();
+        restoreBounds = new BoundingBox(stage.getX(), stage.getY(), stage.getWidth(), stage.getHeight());
+        stage.setX(visualBounds.getMinX() - d);
+        stage.setY(visualBounds.getMinY() - d);
+        stage.setWidth(visualBounds.getWidth() + d * 2);
+        stage.setHeight(visualBounds.getHeight() + d * 2);
+    }
+
+    /**
+     * Gets the bounds the stage goes back to when it is restored.
+     *
+     * @return the bounds, or {@code null} if the window is not maximized by this scene
+     */
+    BoundingBox getRestoreBounds() {
+        return restoreBounds;
+    }
+
+    /**
+     * @return {@code true} if the window is maximized
+     */
     public final boolean isMaximized() {
         return maximized == null ? false : maximized.get();
     }
@@ -524,6 +848,7 @@ public class ShadedScene extends Scene {
                     setOnMouseMoved(l);
                     setOnMousePressed(l);
                     setOnMouseDragged(l);
+                    setOnMouseReleased(l);
                     setOnMouseEntered(l);
                     setOnMouseExited(l);
                 }
@@ -533,14 +858,87 @@ public class ShadedScene extends Scene {
     }
 
     private final ResizeListener listener = new ResizeListener();
+
+    private BooleanProperty performanceHudVisible;
+    private PerformanceHud performanceHud;
+
+    /**
+     * Shows or hides the performance overlay. It can also be toggled with
+     * {@link #PERFORMANCE_HUD_SHORTCUT}.
+     *
+     * @param value {@code true} to show the overlay
+     */
+    public final void setPerformanceHudVisible(boolean value) {
+        performanceHudVisibleProperty().set(value);
+    }
+
+    /**
+     * Tells whether the performance overlay is shown.
+     *
+     * @return {@code true} if the overlay is shown
+     */
+    public final boolean isPerformanceHudVisible() {
+        return performanceHudVisible == null ? false : performanceHudVisible.get();
+    }
+
+    /**
+     * Gets the property that shows the performance overlay: frames rendered per second, a histogram
+     * of the intervals between rendered frames, layout passes per second, shadow renders and the
+     * window mode, drawn above the root of this scene. The numbers are only collected while the
+     * window is showing.
+     *
+     * @return the performance overlay visible property
+     */
+    public final BooleanProperty performanceHudVisibleProperty() {
+        if (performanceHudVisible == null) {
+            performanceHudVisible = new SimpleBooleanProperty(ShadedScene.this, "performanceHudVisible", false) {
+
+                @Override
+                protected void invalidated() {
+                    if (get()) {
+                        if (performanceHud == null) {
+                            performanceHud = new PerformanceHud(ShadedScene.this);
+                        }
+                        container.setOverlay(performanceHud);
+                    } else if (performanceHud != null) {
+                        container.setOverlay(null);
+                    }
+                    updatePerformanceHud();
+                }
+            };
+        }
+        return performanceHudVisible;
+    }
+
+    /**
+     * Runs the performance overlay while it is visible and the window is showing, so that a window
+     * closed with the overlay visible does not keep it collecting (and the scene referenced).
+     */
+    private void updatePerformanceHud() {
+        if (performanceHud != null) {
+            Window window = getWindow();
+            if (isPerformanceHudVisible() && window != null && window.isShowing()) {
+                performanceHud.start();
+            } else {
+                performanceHud.stop();
+            }
+        }
+    }
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="Inner Class (ShadedRootContainer)">
     private static class ShadedRootContainer extends Region {
 
         private final Rectangle backgroundRectangle = new Rectangle();
-        private final Rectangle shadowRectangle = new Rectangle();
-        private final DropShadow shadowEffect = new DropShadow();
+        private final Region shadowRegion = new Region();
+        private final ShadedSceneMetrics metrics;
+
+        // The shadows (focused and not focused) rendered for each render scale the window has been
+        // on, for the current color and radius
+        private final Map<Double, Border[]> shadowVariants = new HashMap<>();
+        private Border[] currentShadows;
+        private boolean shadowPending = true;
+        private double renderScale = 1.0;
 
 //        private double initX = -1;
 //        private double initY = -1;
@@ -553,12 +951,27 @@ public class ShadedScene extends Scene {
          * @param shadowRadius the radius of the shadow
          */
         public ShadedRootContainer(Parent root, Paint fill, Color shadowColor, double shadowRadius) {
+            this(root, fill, shadowColor, shadowRadius, ShadedSceneMetrics.create());
+        }
+
+        /**
+         * Creates a container for a specific root Node, that counts its work in some metrics.
+         *
+         * @param root the root node of the scene graph
+         * @param fill the fill
+         * @param shadowColor the color of the shadow
+         * @param shadowRadius the radius of the shadow
+         * @param metrics the metrics
+         */
+        ShadedRootContainer(Parent root, Paint fill, Color shadowColor, double shadowRadius,
+                ShadedSceneMetrics metrics) {
+            this.metrics = metrics;
             checkParameters(root, shadowRadius);
 
             setRoot(root);
             setFill(fill);
-            setShadowColor(shadowColor);
             setShadowRadius(shadowRadius);
+            setShadowColor(shadowColor);
             setStyle("-fx-background-color: transparent;");
 
             createUI();
@@ -573,15 +986,12 @@ public class ShadedScene extends Scene {
          * @param root the root node of the scene graph
          * @param shadowRadius the radius of the shadow
          *
-         * @throws RuntimeException if platform does not support transparent window
          * @throws NullPointerException if root is null
          * @throws IllegalArgumentException if shadow radius value is out of the range 0.0 - 127.0
          */
         private void checkParameters(Parent root, double shadowRadius) {
 
-            if (!Platform.isSupported(ConditionalFeature.TRANSPARENT_WINDOW)) {
-                throw new RuntimeException("This platform does not support transparent window to create the shadow effect");
-            } else if (root == null) {
+            if (root == null) {
                 throw new NullPointerException("Root cannot be null");
             } else if (shadowRadius < 0 || shadowRadius > 127) {
                 throw new IllegalArgumentException("Shadow radius value (" + shadowRadius + ") must be in the range 0.0 - 127.0");
@@ -589,9 +999,9 @@ public class ShadedScene extends Scene {
         }
 
         private void createUI() {
-            initShadowRectangle();
+            initShadowRegion();
             initBackgroundRectangle();
-            getChildren().setAll(shadowRectangle, backgroundRectangle, getRoot());
+            getChildren().setAll(shadowRegion, backgroundRectangle, getRoot());
         }
 
         private void initBackgroundRectangle() {
@@ -599,44 +1009,75 @@ public class ShadedScene extends Scene {
             backgroundRectangle.setMouseTransparent(true);
         }
 
-        private void initShadowRectangle() {
-            shadowRectangle.getStyleClass().setAll("scene-shadow");
+        private void initShadowRegion() {
+            shadowRegion.getStyleClass().setAll("scene-shadow");
             // Do not intercept mouse events on stage's shadow
-            shadowRectangle.setMouseTransparent(true);
-            shadowRectangle.setEffect(shadowEffect);
-            shadowRectangle.layoutBoundsProperty().addListener((observable, oldBounds, newBounds) -> {
-                if (shadowEffect.getRadius() != 0) {
-                    shadowRectangle.setVisible(true);
-                    setShadowClip(newBounds);
-                } else {
-                    shadowRectangle.setVisible(false);
-                }
-            });
+            shadowRegion.setMouseTransparent(true);
+            // The shadow is laid out by this container and never asks it for a layout
+            shadowRegion.setManaged(false);
         }
 
         /**
-         * Computes the needed clip for stage's shadow border
+         * Sets the render scale of the window, swapping the shadow for the one rendered at this
+         * scale. Every variant has the same insets, so the swap is repainted without a layout.
          *
-         * @param newBounds
-         * @param shadowVisible
+         * @param value the render scale
          */
-        private void setShadowClip(Bounds newBounds) {
+        private void setRenderScale(double value) {
+            if (renderScale != value) {
+                renderScale = value;
+                currentShadows = null;
+                updateShadow();
+            }
+        }
 
-            final Rectangle internal = new Rectangle();
-            final Rectangle external = new Rectangle();
-            double radius = shadowEffect.getRadius();
+        /**
+         * Drops the shadows rendered for the previous color or radius.
+         */
+        private void shadowChanged() {
+            shadowVariants.clear();
+            currentShadows = null;
+            updateShadow();
+        }
 
-            external.relocate(newBounds.getMinX() - radius, newBounds.getMinY() - radius);
-            internal.setX(radius);
-            internal.setY(radius);
-            internal.setWidth(newBounds.getWidth());
-            internal.setHeight(newBounds.getHeight());
-            internal.setArcWidth(shadowRectangle.getArcWidth());    // shadowRectangle CSS cannot be applied on this
-            internal.setArcHeight(shadowRectangle.getArcHeight());
+        /**
+         * Shows the shadow for the current focus and render scale. Until the container is shown in
+         * a window (it may be built on another thread, see {@link ShadedSceneBuilder}), the shadow
+         * is only marked as pending and resolved by the next layout, on the JavaFX Application
+         * Thread, as rendering it takes a snapshot.
+         */
+        private void updateShadow() {
+            Scene scene = getScene();
+            if (scene == null || scene.getWindow() == null) {
+                shadowPending = true;
+            } else {
+                resolveShadow();
+            }
+        }
 
-            external.setWidth(newBounds.getWidth() + radius * 2);
-            external.setHeight(newBounds.getHeight() + radius * 2);
-            shadowRectangle.setClip(Shape.subtract(external, internal));
+        /**
+         * Sets the shadow for the current focus and render scale, getting it from the shared
+         * {@link ShadowImages} cache the first time.
+         */
+        private void resolveShadow() {
+            shadowPending = false;
+            if (currentShadows == null) {
+                currentShadows = shadowVariants.get(renderScale);
+                if (currentShadows == null) {
+                    currentShadows = new Border[2];
+                    shadowVariants.put(renderScale, currentShadows);
+                }
+            }
+            final boolean focused = isShaded();
+            final int index = focused ? 0 : 1;
+            Border border = currentShadows[index];
+            if (border == null) {
+                metrics.shadowRendered();
+                border = ShadowImages.getShadowBorder(focused ? getShadowColor() : notFocusedColor,
+                        getShadowRadius(), backgroundRectangle.getArcWidth(), renderScale);
+                currentShadows[index] = border;
+            }
+            shadowRegion.setBorder(border);
         }
 
         private void addDragListener() {
@@ -665,27 +1106,61 @@ public class ShadedScene extends Scene {
 
         @Override
         protected void layoutChildren() {
+            metrics.layoutPass();
+            if (shadowPending) {
+                resolveShadow();
+            }
+            final Object event = LibraryEvents.LAYOUT_PASS.begin();
             final double ROUNDED_DELTA = 0; // shadow.getArcWidth() / 4;
             Bounds b = getLayoutBounds();
             double w = b.getWidth();
             double h = b.getHeight();
-            double radius = shadowEffect.getRadius();
+            double radius = getShadowRadius();
 
             ObservableList<Node> children = getChildren();
 
-            children.stream().forEach((node) -> {
-                if (node == shadowRectangle || node == backgroundRectangle) {
-                    Rectangle rectangle = (Rectangle) node;
-                    rectangle.setWidth(w - radius * 2);
-                    rectangle.setHeight(h - radius * 2);
-                    rectangle.setX(radius);
-                    rectangle.setY(radius);
+            // An indexed loop, as this runs on every resize and must not create garbage
+            for (int i = 0, size = children.size(); i < size; i++) {
+                Node node = children.get(i);
+                if (node == shadowRegion) {
+                    shadowRegion.resizeRelocate(0, 0, w, h);
+                } else if (node == backgroundRectangle) {
+                    backgroundRectangle.setWidth(w - radius * 2);
+                    backgroundRectangle.setHeight(h - radius * 2);
+                    backgroundRectangle.setX(radius);
+                    backgroundRectangle.setY(radius);
                 } else {
+                    // The performance overlay is a canvas: it keeps its size at the top left of the root
                     node.resize(w - radius * 2 - ROUNDED_DELTA * 2, h - radius * 2 - ROUNDED_DELTA * 2);
                     node.setLayoutX(radius + ROUNDED_DELTA);
                     node.setLayoutY(radius + ROUNDED_DELTA);
                 }
-            });
+            }
+            if (event != null) {
+                LibraryEvents.LAYOUT_PASS.commit(event, w, h);
+            }
+        }
+
+        /**
+         * Sets a node shown above the root, or removes it.
+         *
+         * @param overlay the overlay, may be null
+         */
+        private void setOverlay(Node overlay) {
+            ObservableList<Node> children = getChildren();
+            if (children.size() > 3) {
+                children.remove(3, children.size());
+            }
+            if (overlay != null) {
+                children.add(overlay);
+            }
+        }
+
+        private void shadowInvalidated(String reason) {
+            metrics.shadowInvalidated();
+            if (LibraryEvents.SHADOW_INVALIDATION.isEnabled()) {
+                LibraryEvents.SHADOW_INVALIDATION.emit(reason);
+            }
         }
 
         private ObjectProperty<Parent> root;
@@ -702,6 +1177,8 @@ public class ShadedScene extends Scene {
             if (root == null) {
                 root = new SimpleObjectProperty<Parent>(ShadedRootContainer.this, "root") {
 
+                    private Parent oldRoot;
+
                     @Override
                     protected void invalidated() {
                         Parent newRoot = get();
@@ -721,10 +1198,15 @@ public class ShadedScene extends Scene {
                                     + "scene-graph and cannot be set as root");
                         }
 
-//                        if (children.size() == 3) {
-//                            children.set(2, newRoot);
-//                        }
+                        if (oldRoot != null) {
+                            oldRoot.getStyleClass().remove("root");
+                        }
+                        ObservableList<Node> children = getChildren();
+                        if (children.size() >= 3) {
+                            children.set(2, newRoot);
+                        }
                         newRoot.getStyleClass().add(0, "root");
+                        oldRoot = newRoot;
                     }
                 };
             }
@@ -768,6 +1250,8 @@ public class ShadedScene extends Scene {
                     @Override
                     protected void invalidated() {
                         notFocusedColor = getBrighterShadowColor(get());
+                        shadowInvalidated("color");
+                        shadowChanged();
                     }
                 };
             }
@@ -795,10 +1279,12 @@ public class ShadedScene extends Scene {
                             throw new IllegalArgumentException("Shadow radius value (" + value + ") "
                                     + "must be in the range 0.0 - 127.0");
                         }
+                        shadowInvalidated("radius");
+                        shadowChanged();
+                        requestLayout();
                         // TODO: Fazer redimensionamento?
                     }
                 };
-                shadowRadius.bindBidirectional(shadowEffect.radiusProperty());
             }
             return shadowRadius;
         }
@@ -823,7 +1309,8 @@ public class ShadedScene extends Scene {
 
                     @Override
                     protected void invalidated() {
-                        shadowEffect.setColor(get() ? shadowColor.get() : notFocusedColor);
+                        shadowInvalidated("focus");
+                        updateShadow();
                     }
                 };
             }
@@ -852,6 +1339,10 @@ public class ShadedScene extends Scene {
         private boolean resizeV = false;
         private final double border = 10; // getShadowRadius();
 
+        private Object gesture;
+        private long gestureEvents;
+        private long gestureCommits;
+
         @Override
         public void handle(MouseEvent e) {
 
@@ -863,116 +1354,153 @@ public class ShadedScene extends Scene {
             if (scene != null && (obj = scene.getWindow()) instanceof Stage) {
 
                 final Stage stage = (Stage) obj;
+                final long start = System.nanoTime();
+                final double x = stage.getX();
+                final double y = stage.getY();
+                final double w = stage.getWidth();
+                final double h = stage.getHeight();
+
+                handle(e, scene, stage);
+
+                boolean applied = x != stage.getX() || y != stage.getY()
+                        || w != stage.getWidth() || h != stage.getHeight();
+                if (scene instanceof ShadedScene) {
+                    ((ShadedScene) scene).getMetrics().resizeEvent(applied, System.nanoTime() - start);
+                }
+                recordGesture(e, scene, applied);
+            }
+        }
 
-                double eX = e.getX();
-                double eY = e.getY();
-                double width = scene.getWidth();
-                double height = scene.getHeight();
-
-                if (MouseEvent.MOUSE_MOVED.equals(e.getEventType())) {
-                    if (eX < border && eY < border) {
-                        scene.setCursor(Cursor.NW_RESIZE);
-                        resizeH = true;
-                        resizeV = true;
-                        moveH = true;
-                        moveV = true;
-                    } else if (eX < border && eY > height - border) {
-                        scene.setCursor(Cursor.SW_RESIZE);
-                        resizeH = true;
-                        resizeV = true;
-                        moveH = true;
-                        moveV = false;
-                    } else if (eX > width - border && eY < border) {
-                        scene.setCursor(Cursor.NE_RESIZE);
-                        resizeH = true;
-                        resizeV = true;
-                        moveH = false;
-                        moveV = true;
-                    } else if (eX > width - border && eY > height - border) {
-                        scene.setCursor(Cursor.SE_RESIZE);
-                        resizeH = true;
-                        resizeV = true;
-                        moveH = false;
-                        moveV = false;
-                    } else if (eX < border || eX > width - border) {
-                        scene.setCursor(Cursor.H_RESIZE);
-                        resizeH = true;
-                        resizeV = false;
-                        moveH = (eX < border);
-                        moveV = false;
-                    } else if (eY < border || eY > height - border) {
-                        scene.setCursor(Cursor.V_RESIZE);
-                        resizeH = false;
-                        resizeV = true;
-                        moveH = false;
-                        moveV = (eY < border);
-                    } else {
-                        scene.setCursor(Cursor.DEFAULT);
-                        resizeH = false;
-                        resizeV = false;
-                        moveH = false;
-                        moveV = false;
-                    }
-                } else if (MouseEvent.MOUSE_PRESSED.equals(e.getEventType())) {
-                    dx = stage.getWidth() - eX;
-                    dy = stage.getHeight() - eY;
-                } else if (MouseEvent.MOUSE_DRAGGED.equals(e.getEventType())) {
-                    if (resizeH) {
-                        double stageWidth = stage.getWidth();
-                        if (stageWidth <= stage.getMinWidth()) {
-                            if (moveH) {
-                                deltaX = stage.getX() - e.getScreenX();
-                                if (eX < 0) {// if new > old, it's permitted
-                                    stage.setWidth(deltaX + stageWidth);
-                                    stage.setX(e.getScreenX());
-                                }
-                            } else {
-                                if (eX + dx - stageWidth > 0) {
-                                    stage.setWidth(eX + dx);
-                                }
-                            }
-                        } else if (stageWidth > stage.getMinWidth()) {
-                            if (moveH) {
-                                deltaX = stage.getX() - e.getScreenX();
+        /**
+         * Records the resize and move gestures, from the mouse press to its release, as flight
+         * recorder events.
+         */
+        private void recordGesture(MouseEvent e, Scene scene, boolean applied) {
+            if (MouseEvent.MOUSE_PRESSED.equals(e.getEventType())) {
+                gesture = resizeH || resizeV ? LibraryEvents.WINDOW_GESTURE.begin() : null;
+                gestureEvents = 0;
+                gestureCommits = 0;
+            } else if (MouseEvent.MOUSE_DRAGGED.equals(e.getEventType())) {
+                gestureEvents++;
+                if (applied) {
+                    gestureCommits++;
+                }
+            } else if (MouseEvent.MOUSE_RELEASED.equals(e.getEventType()) && gesture != null) {
+                LibraryEvents.WINDOW_GESTURE.commit(gesture, moveH || moveV ? "move" : "resize",
+                        gestureEvents, gestureCommits);
+                gesture = null;
+            }
+        }
+
+        private void handle(MouseEvent e, Scene scene, Stage stage) {
+            double eX = e.getX();
+            double eY = e.getY();
+            double width = scene.getWidth();
+            double height = scene.getHeight();
+
+            if (MouseEvent.MOUSE_MOVED.equals(e.getEventType())) {
+                if (eX < border && eY < border) {
+                    scene.setCursor(Cursor.NW_RESIZE);
+                    resizeH = true;
+                    resizeV = true;
+                    moveH = true;
+                    moveV = true;
+                } else if (eX < border && eY > height - border) {
+                    scene.setCursor(Cursor.SW_RESIZE);
+                    resizeH = true;
+                    resizeV = true;
+                    moveH = true;
+                    moveV = false;
+                } else if (eX > width - border && eY < border) {
+                    scene.setCursor(Cursor.NE_RESIZE);
+                    resizeH = true;
+                    resizeV = true;
+                    moveH = false;
+                    moveV = true;
+                } else if (eX > width - border && eY > height - border) {
+                    scene.setCursor(Cursor.SE_RESIZE);
+                    resizeH = true;
+                    resizeV = true;
+                    moveH = false;
+                    moveV = false;
+                } else if (eX < border || eX > width - border) {
+                    scene.setCursor(Cursor.H_RESIZE);
+                    resizeH = true;
+                    resizeV = false;
+                    moveH = (eX < border);
+                    moveV = false;
+                } else if (eY < border || eY > height - border) {
+                    scene.setCursor(Cursor.V_RESIZE);
+                    resizeH = false;
+                    resizeV = true;
+                    moveH = false;
+                    moveV = (eY < border);
+                } else {
+                    scene.setCursor(Cursor.DEFAULT);
+                    resizeH = false;
+                    resizeV = false;
+                    moveH = false;
+                    moveV = false;
+                }
+            } else if (MouseEvent.MOUSE_PRESSED.equals(e.getEventType())) {
+                dx = stage.getWidth() - eX;
+                dy = stage.getHeight() - eY;
+            } else if (MouseEvent.MOUSE_DRAGGED.equals(e.getEventType())) {
+                if (resizeH) {
+                    double stageWidth = stage.getWidth();
+                    if (stageWidth <= stage.getMinWidth()) {
+                        if (moveH) {
+                            deltaX = stage.getX() - e.getScreenX();
+                            if (eX < 0) {// if new > old, it's permitted
                                 stage.setWidth(deltaX + stageWidth);
                                 stage.setX(e.getScreenX());
-                            } else {
+                            }
+                        } else {
+                            if (eX + dx - stageWidth > 0) {
                                 stage.setWidth(eX + dx);
                             }
                         }
+                    } else if (stageWidth > stage.getMinWidth()) {
+                        if (moveH) {
+                            deltaX = stage.getX() - e.getScreenX();
+                            stage.setWidth(deltaX + stageWidth);
+                            stage.setX(e.getScreenX());
+                        } else {
+                            stage.setWidth(eX + dx);
+                        }
                     }
-                    if (resizeV) {
-                        double stageHeight = stage.getHeight();
-                        if (stageHeight <= stage.getMinHeight()) {
-                            if (moveV) {
-                                deltaY = stage.getY() - e.getScreenY();
-                                if (eY < 0) { // if new > old, it's permitted
-                                    stage.setHeight(deltaY + stageHeight);
-                                    stage.setY(e.getScreenY());
-                                }
-                            } else {
-                                if (eY + dy - stageHeight > 0) {
-                                    stage.setHeight(eX + dy);
-                                }
-                            }
-                        } else if (stageHeight > stage.getMinHeight()) {
-                            if (moveV) {
-                                deltaY = stage.getY() - e.getScreenY();
+                }
+                if (resizeV) {
+                    double stageHeight = stage.getHeight();
+                    if (stageHeight <= stage.getMinHeight()) {
+                        if (moveV) {
+                            deltaY = stage.getY() - e.getScreenY();
+                            if (eY < 0) { // if new > old, it's permitted
                                 stage.setHeight(deltaY + stageHeight);
                                 stage.setY(e.getScreenY());
-                            } else {
-                                stage.setHeight(eY + dy);
+                            }
+                        } else {
+                            if (eY + dy - stageHeight > 0) {
+                                stage.setHeight(eX + dy);
                             }
                         }
+                    } else if (stageHeight > stage.getMinHeight()) {
+                        if (moveV) {
+                            deltaY = stage.getY() - e.getScreenY();
+                            stage.setHeight(deltaY + stageHeight);
+                            stage.setY(e.getScreenY());
+                        } else {
+                            stage.setHeight(eY + dy);
+                        }
                     }
-                } else if (MouseEvent.MOUSE_ENTERED.equals(e.getEventType())) {
-                    if (!e.isPrimaryButtonDown()) {
-                        scene.setCursor(Cursor.DEFAULT);
-                    }
-                } else if (MouseEvent.MOUSE_EXITED.equals(e.getEventType())) {
-                    if (!e.isPrimaryButtonDown()) {
-                        scene.setCursor(Cursor.DEFAULT);
-                    }
+                }
+            } else if (MouseEvent.MOUSE_ENTERED.equals(e.getEventType())) {
+                if (!e.isPrimaryButtonDown()) {
+                    scene.setCursor(Cursor.DEFAULT);
+                }
+            } else if (MouseEvent.MOUSE_EXITED.equals(e.getEventType())) {
+                if (!e.isPrimaryButtonDown()) {
+                    scene.setCursor(Cursor.DEFAULT);
                 }
             }
         }
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.stage.Stage;
+
+import krugerfx.scene.control.StageButtons;
+import krugerfx.scene.control.StageButtonsStyle;
+import krugerfx.scene.control.StageButtonsType;
+
+/**
+ * Builds a {@link ShadedScene} without stalling the JavaFX Application Thread.
+ *
+ * The user root, the {@code StageButtons} and the shaded root container (with its shadow) are
+ * assembled on a background executor; only the final step, which creates the {@code Scene} around
+ * them and optionally attaches it to a stage and shows it, runs on the JavaFX Application Thread.
+ * The nodes must not be attached to a showing scene until the future completes.
+ *
+ * <pre>
+ * ShadedSceneBuilder.create(() -&gt; new ReportView(data))
+ *         .size(800, 600)
+ *         .stageButtons(StageButtonsType.MINIMIZE_MAXIMIZE_CLOSE, StageButtonsStyle.WINDOWS_10,
+ *                 (root, buttons) -&gt; ((ReportView) root).setTop(buttons))
+ *         .show(new Stage());
+ * </pre>
+ *
+ * @author kleberkruger
+ */
+public final class ShadedSceneBuilder {
+
+    private final Supplier<? extends Parent> root;
+
+    private double width = -1;
+    private double height = -1;
+    private Paint fill = ShadedScene.DEFAULT_FILL;
+    private Color shadowColor = ShadedScene.DEFAULT_SHADOW_COLOR;
+    private double shadowRadius = ShadedScene.DEFAULT_SHADOW_RADIUS;
+
+    private StageButtonsType buttonsType;
+    private StageButtonsStyle buttonsStyle;
+    private BiConsumer<? super Parent, ? super StageButtons> buttonsPlacement;
+
+    private Executor executor = ForkJoinPool.commonPool();
+
+    private ShadedSceneBuilder(Supplier<? extends Parent> root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a builder for a scene whose root is created by a supplier. The supplier runs on the
+     * background executor.
+     *
+     * @param root the supplier of the root node of the scene graph
+     *
+     * @return the builder
+     *
+     * @throws NullPointerException if root is null
+     */
+    public static ShadedSceneBuilder create(Supplier<? extends Parent> root) {
+        if (root == null) {
+            throw new NullPointerException("Root supplier cannot be null");
+        }
+        return new ShadedSceneBuilder(root);
+    }
+
+    /**
+     * Sets the size of the root (the scene is bigger by the shadow margin).
+     *
+     * @param width the width of the root
+     * @param height the height of the root
+     *
+     * @return this builder
+     */
+    public ShadedSceneBuilder size(double width, double height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    /**
+     * Sets the fill of the scene.
+     *
+     * @param fill the fill
+     *
+     * @return this builder
+     */
+    public ShadedSceneBuilder fill(Paint fill) {
+        this.fill = fill;
+        return this;
+    }
+
+    /**
+     * Sets the shadow of the scene.
+     *
+     * @param color the color of the shadow
+     * @param radius the radius of the shadow
+     *
+     * @return this builder
+     *
+     * @throws IllegalArgumentException if radius is out of the range 0.0 - 127.0
+     */
+    public ShadedSceneBuilder shadow(Color color, double radius) {
+        if (radius < 0 || radius > 127) {
+            throw new IllegalArgumentException("Shadow radius value (" + radius + ") must be in the range 0.0 - 127.0");
+        }
+        this.shadowColor = color;
+        this.shadowRadius = radius;
+        return this;
+    }
+
+    /**
+     * Adds {@code StageButtons} to the scene. They are created on the background executor and
+     * handed, with the root, to the placement action, which puts them in the scene graph.
+     *
+     * @param type the type of stage buttons
+     * @param style the style of stage buttons
+     * @param placement the action that puts the buttons in the root
+     *
+     * @return this builder
+     *
+     * @throws NullPointerException if placement is null
+     */
+    public ShadedSceneBuilder stageButtons(StageButtonsType type, StageButtonsStyle style,
+            BiConsumer<? super Parent, ? super StageButtons> placement) {
+        if (placement == null) {
+            throw new NullPointerException("Placement cannot be null");
+        }
+        this.buttonsType = type;
+        this.buttonsStyle = style;
+        this.buttonsPlacement = placement;
+        return this;
+    }
+
+    /**
+     * Sets the executor that assembles the nodes. The default is the common fork-join pool.
+     *
+     * @param executor the executor
+     *
+     * @return this builder
+     *
+     * @throws NullPointerException if executor is null
+     */
+    public ShadedSceneBuilder executor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor cannot be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Assembles the scene.
+     *
+     * @return a future completed, on the JavaFX Application Thread, with the scene
+     */
+    public CompletableFuture<ShadedScene> build() {
+        // The settings are copied, so the builder can be changed while the scene is assembled
+        final Supplier<? extends Parent> rootSupplier = root;
+        final Paint sceneFill = fill;
+        final Color color = shadowColor;
+        final double radius = shadowRadius;
+        final StageButtonsType type = buttonsType;
+        final StageButtonsStyle style = buttonsStyle;
+        final BiConsumer<? super Parent, ? super StageButtons> placement = buttonsPlacement;
+        final double w = width;
+        final double h = height;
+
+        return CompletableFuture.supplyAsync(() -> {
+            Parent parent = rootSupplier.get();
+            if (placement != null) {
+                StageButtons buttons = type == null ? new StageButtons() : new StageButtons(type);
+                if (style != null) {
+                    buttons.setStageButtonsStyle(style);
+                }
+                placement.accept(parent, buttons);
+            }
+            return ShadedScene.createContainer(parent, sceneFill, color, radius);
+        }, executor).thenApplyAsync((Region container) -> {
+            return ShadedScene.create(container, w, h);
+        }, Platform::runLater);
+    }
+
+    /**
+     * Assembles the scene, then sets it on a stage and shows the stage.
+     *
+     * @param stage the stage, not yet shown
+     *
+     * @return a future completed, on the JavaFX Application Thread, with the scene once shown
+     *
+     * @throws NullPointerException if stage is null
+     */
+    public CompletableFuture<ShadedScene> show(Stage stage) {
+        if (stage == null) {
+            throw new NullPointerException("Stage cannot be null");
+        }
+        return build().thenApplyAsync((ShadedScene scene) -> {
+            stage.setScene(scene);
+            stage.show();
+            return scene;
+        }, Platform::runLater);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the work done by shaded scenes.
+ *
+ * Each {@link ShadedScene} has its own metrics (see {@link ShadedScene#getMetrics()}) and every
+ * count is added to the global metrics of the JVM as well, which also hold the counters that do
+ * not belong to a scene (shadow image cache and stage pools). The global metrics are published as
+ * a platform MXBean named {@value #OBJECT_NAME}, so they can be watched with any JMX client.
+ *
+ * The counters are updated by the JavaFX Application Thread and can be read from any thread.
+ *
+ * @author kleberkruger
+ */
+public final class ShadedSceneMetrics implements ShadedSceneMetricsMXBean {
+
+    /**
+     * The JMX name of the global metrics.
+     */
+    public static final String OBJECT_NAME = "krugerfx:type=ShadedSceneMetrics";
+
+    private static final ShadedSceneMetrics global = new ShadedSceneMetrics(null);
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(global, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException ex) {
+            // The metrics are still available through the Java API
+        }
+    }
+
+    private final ShadedSceneMetrics parent;
+
+    private final AtomicLong layoutPasses = new AtomicLong();
+    private final AtomicLong shadowInvalidations = new AtomicLong();
+    private final AtomicLong shadowRenders = new AtomicLong();
+    private final AtomicLong resizeEventsReceived = new AtomicLong();
+    private final AtomicLong resizeEventsApplied = new AtomicLong();
+    private final AtomicLong resizeTimeNanos = new AtomicLong();
+    private final AtomicLong shadowCacheHits = new AtomicLong();
+    private final AtomicLong shadowCacheMisses = new AtomicLong();
+    private final AtomicLong stagePoolHits = new AtomicLong();
+    private final AtomicLong stagePoolMisses = new AtomicLong();
+
+    private ShadedSceneMetrics(ShadedSceneMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates the metrics of a scene, which add their counts to the global ones.
+     *
+     * @return the metrics
+     */
+    static ShadedSceneMetrics create() {
+        return new ShadedSceneMetrics(global);
+    }
+
+    /**
+     * Creates metrics that do not add their counts to the global ones, for scenes that are not
+     * part of the application (e.g. the one of {@link ShadedScene#prewarm()}).
+     *
+     * @return the metrics
+     */
+    static ShadedSceneMetrics createDetached() {
+        return new ShadedSceneMetrics(null);
+    }
+
+    /**
+     * Gets the metrics of all the shaded scenes of the JVM.
+     *
+     * @return the global metrics
+     */
+    public static ShadedSceneMetrics getGlobal() {
+        return global;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Counters">
+    void layoutPass() {
+        layoutPasses.incrementAndGet();
+        if (parent != null) {
+            parent.layoutPass();
+        }
+    }
+
+    void shadowInvalidated() {
+        shadowInvalidations.incrementAndGet();
+        if (parent != null) {
+            parent.shadowInvalidated();
+        }
+    }
+
+    void shadowRendered() {
+        shadowRenders.incrementAndGet();
+        if (parent != null) {
+            parent.shadowRendered();
+        }
+    }
+
+    void resizeEvent(boolean applied, long nanos) {
+        resizeEventsReceived.incrementAndGet();
+        if (applied) {
+            resizeEventsApplied.incrementAndGet();
+        }
+        resizeTimeNanos.addAndGet(nanos);
+        if (parent != null) {
+            parent.resizeEvent(applied, nanos);
+        }
+    }
+
+    void shadowCacheLookup(boolean hit) {
+        (hit ? shadowCacheHits : shadowCacheMisses).incrementAndGet();
+        if (parent != null) {
+            parent.shadowCacheLookup(hit);
+        }
+    }
+
+    void stagePoolLookup(boolean hit) {
+        (hit ? stagePoolHits : stagePoolMisses).incrementAndGet();
+        if (parent != null) {
+            parent.stagePoolLookup(hit);
+        }
+    }
+    //</editor-fold>
+
+    @Override
+    public long getLayoutPasses() {
+        return layoutPasses.get();
+    }
+
+    @Override
+    public long getShadowInvalidations() {
+        return shadowInvalidations.get();
+    }
+
+    @Override
+    public long getShadowRenders() {
+        return shadowRenders.get();
+    }
+
+    @Override
+    public long getResizeEventsReceived() {
+        return resizeEventsReceived.get();
+    }
+
+    @Override
+    public long getResizeEventsApplied() {
+        return resizeEventsApplied.get();
+    }
+
+    @Override
+    public long getResizeTimeNanos() {
+        return resizeTimeNanos.get();
+    }
+
+    @Override
+    public long getShadowCacheHits() {
+        return shadowCacheHits.get();
+    }
+
+    @Override
+    public long getShadowCacheMisses() {
+        return shadowCacheMisses.get();
+    }
+
+    @Override
+    public double getShadowCacheHitRate() {
+        long hits = shadowCacheHits.get();
+        long total = hits + shadowCacheMisses.get();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    @Override
+    public long getStagePoolHits() {
+        return stagePoolHits.get();
+    }
+
+    @Override
+    public long getStagePoolMisses() {
+        return stagePoolMisses.get();
+    }
+
+    /**
+     * Sets the counters of these metrics back to zero. Resetting the metrics of a scene does not
+     * change the global ones.
+     */
+    @Override
+    public void reset() {
+        layoutPasses.set(0);
+        shadowInvalidations.set(0);
+        shadowRenders.set(0);
+        resizeEventsReceived.set(0);
+        resizeEventsApplied.set(0);
+        resizeTimeNanos.set(0);
+        shadowCacheHits.set(0);
+        shadowCacheMisses.set(0);
+        stagePoolHits.set(0);
+        stagePoolMisses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "ShadedSceneMetrics[layoutPasses=" + getLayoutPasses()
+                + ", shadowInvalidations=" + getShadowInvalidations()
+                + ", shadowRenders=" + getShadowRenders()
+                + ", resizeEventsReceived=" + getResizeEventsReceived()
+                + ", resizeEventsApplied=" + getResizeEventsApplied()
+                + ", resizeTimeNanos=" + getResizeTimeNanos()
+                + ", shadowCacheHitRate=" + getShadowCacheHitRate()
+                + ", stagePoolHits=" + getStagePoolHits()
+                + ", stagePoolMisses=" + getStagePoolMisses() + "]";
+    }
+}
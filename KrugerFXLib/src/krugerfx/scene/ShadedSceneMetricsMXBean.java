@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+/**
+ * The management interface of {@link ShadedSceneMetrics}, published through JMX under the
+ * {@value ShadedSceneMetrics#OBJECT_NAME} name with the counters of every {@code ShadedScene} of
+ * the JVM.
+ *
+ * @author kleberkruger
+ */
+public interface ShadedSceneMetricsMXBean {
+
+    /**
+     * @return the number of layout passes of the shaded containers
+     */
+    long getLayoutPasses();
+
+    /**
+     * @return the number of times a shadow had to be painted again (color, radius or focus change)
+     */
+    long getShadowInvalidations();
+
+    /**
+     * @return the number of times a shadow was fetched for a new color, radius, focus state or
+     * render scale
+     */
+    long getShadowRenders();
+
+    /**
+     * @return the number of mouse events received by the resize handlers
+     */
+    long getResizeEventsReceived();
+
+    /**
+     * @return the number of mouse events that changed the bounds of a stage
+     */
+    long getResizeEventsApplied();
+
+    /**
+     * @return the time spent in the resize handlers, in nanoseconds
+     */
+    long getResizeTimeNanos();
+
+    /**
+     * @return the number of shadow images found in the cache
+     */
+    long getShadowCacheHits();
+
+    /**
+     * @return the number of shadow images that had to be rendered
+     */
+    long getShadowCacheMisses();
+
+    /**
+     * @return the ratio of shadow images found in the cache, or 0 if none was requested
+     */
+    double getShadowCacheHitRate();
+
+    /**
+     * @return the number of stages reused from a {@code ShadedStagePool}
+     */
+    long getStagePoolHits();
+
+    /**
+     * @return the number of stages created because a {@code ShadedStagePool} was empty
+     */
+    long getStagePoolMisses();
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    void reset();
+}
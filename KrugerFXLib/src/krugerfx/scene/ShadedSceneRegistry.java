@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+import javafx.stage.Screen;
+import javafx.stage.Window;
+
+import krugerfx.scene.control.StageButtons;
+import krugerfx.scene.control.StageButtonsStyle;
+
+/**
+ * Keeps track of every live {@link ShadedScene} of the application and takes care of what they
+ * have in common.
+ *
+ * A single focus listener, shared by all stages, updates the shaded state of the window that lost
+ * the focus and of the one that gained it. A single listener on the screens brings back windows
+ * left outside of every screen (e.g. when a monitor is unplugged). Bulk operations change all the
+ * scenes in a single pass of the JavaFX Application Thread, so their changes are laid out and
+ * rendered in the same pulse.
+ *
+ * Scenes are referenced weakly and are registered when they are created.
+ *
+ * @author kleberkruger
+ */
+public final class ShadedSceneRegistry {
+
+    private static final Set<ShadedScene> scenes = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private static final WeakReference<ShadedScene> NO_SCENE = new WeakReference<>(null);
+
+    private static WeakReference<ShadedScene> focusedScene = NO_SCENE;
+
+    private static boolean screensListenerAdded = false;
+
+    private static final ChangeListener<Boolean> focusListener = (ObservableValue<? extends Boolean> observable, Boolean oldFocused, Boolean newFocused) -> {
+        ShadedScene scene = findScene(observable);
+        if (scene != null) {
+            focusChanged(scene, newFocused);
+        }
+    };
+
+    private static final ListChangeListener<Screen> screensListener = (ListChangeListener.Change<? extends Screen> change) -> {
+        screensChanged();
+    };
+
+    private ShadedSceneRegistry() {
+    }
+
+    static void register(ShadedScene scene) {
+        synchronized (scenes) {
+            scenes.add(scene);
+        }
+        if (!screensListenerAdded && Platform.isFxApplicationThread()) {
+            screensListenerAdded = true;
+            Screen.getScreens().addListener(screensListener);
+        }
+    }
+
+    static void unregister(ShadedScene scene) {
+        synchronized (scenes) {
+            scenes.remove(scene);
+        }
+    }
+
+    static void trackFocus(Window window) {
+        window.focusedProperty().removeListener(focusListener);
+        window.focusedProperty().addListener(focusListener);
+    }
+
+    static void untrackFocus(Window window) {
+        window.focusedProperty().removeListener(focusListener);
+    }
+
+    private static ShadedScene findScene(ObservableValue<? extends Boolean> observable) {
+        Object bean = observable instanceof ReadOnlyProperty ? ((ReadOnlyProperty<?>) observable).getBean() : null;
+        if (bean instanceof Window) {
+            Scene scene = ((Window) bean).getScene();
+            return scene instanceof ShadedScene ? (ShadedScene) scene : null;
+        }
+        for (ShadedScene scene : getScenes()) {
+            Window window = scene.getWindow();
+            if (window != null && window.focusedProperty() == observable) {
+                return scene;
+            }
+        }
+        return null;
+    }
+
+    private static void focusChanged(ShadedScene scene, boolean focused) {
+        ShadedScene previous = focusedScene.get();
+        if (focused) {
+            if (previous != null && previous != scene) {
+                previous.setShaded(false);
+            }
+            scene.setShaded(true);
+            // Focus changes often, so the reference is only created when another scene gains it
+            if (previous != scene) {
+                focusedScene = new WeakReference<>(scene);
+            }
+        } else {
+            scene.setShaded(false);
+        }
+    }
+
+    private static void screensChanged() {
+        ObservableList<Screen> screens = Screen.getScreens();
+        for (ShadedScene scene : getScenes()) {
+            Window window = scene.getWindow();
+            if (window == null || !window.isShowing()) {
+                continue;
+            }
+            boolean visible = false;
+            for (Screen screen : screens) {
+                if (screen.getVisualBounds().intersects(window.getX(), window.getY(),
+                        window.getWidth(), window.getHeight())) {
+                    visible = true;
+                    break;
+                }
+            }
+            if (!visible) {
+                Rectangle2D bounds = Screen.getPrimary().getVisualBounds();
+                window.setX(bounds.getMinX() + Math.max(0, (bounds.getWidth() - window.getWidth()) / 2));
+                window.setY(bounds.getMinY() + Math.max(0, (bounds.getHeight() - window.getHeight()) / 2));
+            }
+        }
+    }
+
+    /**
+     * Gets the live scenes.
+     *
+     * @return a snapshot of the live scenes
+     */
+    public static List<ShadedScene> getScenes() {
+        synchronized (scenes) {
+            return new ArrayList<>(scenes);
+        }
+    }
+
+    /**
+     * Applies an action to every live scene in a single pass of the JavaFX Application Thread.
+     *
+     * @param action the action
+     */
+    public static void applyToAll(Consumer<ShadedScene> action) {
+        if (Platform.isFxApplicationThread()) {
+            getScenes().forEach(action);
+        } else {
+            Platform.runLater(() -> {
+                getScenes().forEach(action);
+            });
+        }
+    }
+
+    /**
+     * Sets the color of the shadow of every live scene.
+     *
+     * @param color the color of the shadow
+     */
+    public static void setShadowColor(Color color) {
+        applyToAll((ShadedScene scene) -> {
+            scene.setShadowColor(color);
+        });
+    }
+
+    /**
+     * Sets the radius of the shadow of every live scene.
+     *
+     * @param radius the radius of the shadow
+     */
+    public static void setShadowRadius(double radius) {
+        applyToAll((ShadedScene scene) -> {
+            scene.setShadowRadius(radius);
+        });
+    }
+
+    /**
+     * Sets the style of every {@code StageButtons} shown by a live scene.
+     *
+     * @param style the style of stage buttons
+     */
+    public static void setStageButtonsStyle(StageButtonsStyle style) {
+        applyToAll((ShadedScene scene) -> {
+            for (Node node : scene.getRoot().lookupAll(".stage-buttons")) {
+                if (node instanceof StageButtons) {
+                    ((StageButtons) node).setStageButtonsStyle(style);
+                }
+            }
+        });
+    }
+}
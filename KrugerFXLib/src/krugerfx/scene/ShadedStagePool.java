@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+
+/**
+ * A bounded pool of {@code Stage}s with a {@link ShadedScene}, for windows that are opened and
+ * closed very often (notifications, details, ...).
+ *
+ * {@link #acquire(Parent, double, double)} hands out a hidden stage whose scene shows the given
+ * root, creating one only if the pool is empty. Once the stage is hidden and its
+ * {@code onHidden} handler has run, its scene is reset and the stage goes back to the pool, up to
+ * its capacity. A stage whose scene was replaced by something other than a {@code ShadedScene} is
+ * dropped from the pool. The root container, shadow, listeners and
+ * {@code Stage} object are thus created once per shell instead of once per window (JavaFX still
+ * releases the native window when a stage is hidden).
+ *
+ * A stage goes back to the pool restored (not maximized, iconified or full screen) and is centered
+ * on the screen when shown again, unless the caller sets its position after acquiring it. The
+ * event handlers set through the {@code setOnXxx} methods of a stage are cleared when it goes
+ * back to the pool; handlers added with {@code addEventHandler} are kept, so they should not be
+ * used on pooled stages. The pool must be used from the JavaFX Application Thread.
+ *
+ * @author kleberkruger
+ */
+public class ShadedStagePool {
+
+    private final int capacity;
+    private final Paint fill;
+    private final Color shadowColor;
+    private final double shadowRadius;
+
+    private final Deque<Stage> idle = new ArrayDeque<>();
+
+    /**
+     * Creates a pool that keeps at most {@code capacity} hidden stages with the default look.
+     *
+     * @param capacity the maximum number of hidden stages
+     */
+    public ShadedStagePool(int capacity) {
+        this(capacity, ShadedScene.DEFAULT_FILL, ShadedScene.DEFAULT_SHADOW_COLOR,
+                ShadedScene.DEFAULT_SHADOW_RADIUS);
+    }
+
+    /**
+     * Creates a pool that keeps at most {@code capacity} hidden stages with a fill, a shadow color
+     * and a shadow radius.
+     *
+     * @param capacity the maximum number of hidden stages
+     * @param fill the fill
+     * @param shadowColor the color of the shadow
+     * @param shadowRadius the radius of the shadow
+     *
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public ShadedStagePool(int capacity, Paint fill, Color shadowColor, double shadowRadius) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity (" + capacity + ") cannot be negative");
+        }
+        this.capacity = capacity;
+        this.fill = fill;
+        this.shadowColor = shadowColor;
+        this.shadowRadius = shadowRadius;
+    }
+
+    /**
+     * Creates hidden stages ahead of time, up to the capacity of the pool.
+     *
+     * @param count the number of hidden stages the pool should have
+     */
+    public final void prestart(int count) {
+        int target = Math.min(count, capacity);
+        while (idle.size() < target) {
+            idle.push(createShell());
+        }
+    }
+
+    /**
+     * Gets a hidden stage showing a root, with a content of a specific size (the shadow is added
+     * around it).
+     *
+     * @param root the root node of the scene graph
+     * @param width the width of the content
+     * @param height the height of the content
+     *
+     * @return a hidden stage ready to be shown
+     *
+     * @throws NullPointerException if root is null
+     */
+    public final Stage acquire(Parent root, double width, double height) {
+        Stage stage = idle.poll();
+        while (stage != null && !(stage.getScene() instanceof ShadedScene)) {
+            stage = idle.poll();
+        }
+        ShadedSceneMetrics.getGlobal().stagePoolLookup(stage != null);
+        if (stage == null) {
+            stage = createShell();
+        }
+        ShadedScene scene = (ShadedScene) stage.getScene();
+        scene.setRoot_(root);
+        double d = scene.getShadowRadius();
+        stage.setWidth(width + d * 2);
+        stage.setHeight(height + d * 2);
+        return stage;
+    }
+
+    /**
+     * @return the maximum number of hidden stages
+     */
+    public final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of hidden stages ready to be acquired
+     */
+    public final int getIdleCount() {
+        return idle.size();
+    }
+
+    private Stage createShell() {
+        final Stage stage = new Stage();
+        stage.setScene(new ShadedScene(new Group(), fill, shadowColor, shadowRadius));
+        // Handlers added with addEventHandler run before the onHidden handler of the stage, so the
+        // stage is recycled later, once the handlers of the application have seen it as it was
+        stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, (WindowEvent event) -> {
+            Platform.runLater(() -> {
+                recycle(stage);
+            });
+        });
+        return stage;
+    }
+
+    private void recycle(Stage stage) {
+        Scene scene = stage.getScene();
+        if (stage.isShowing() || !(scene instanceof ShadedScene)) {
+            // Shown again by a handler, or no longer a shell of this pool
+            return;
+        }
+        ((ShadedScene) scene).reset(new Group(), fill, shadowColor, shadowRadius);
+        stage.setTitle(null);
+        stage.setIconified(false);
+        stage.setMaximized(false);
+        stage.setFullScreen(false);
+        // Centered again when shown, unless the next borrower places it
+        stage.centerOnScreen();
+        stage.setOnCloseRequest(null);
+        stage.setOnShowing(null);
+        stage.setOnShown(null);
+        stage.setOnHiding(null);
+        stage.setOnHidden(null);
+        if (idle.size() < capacity && !idle.contains(stage)) {
+            idle.push(stage);
+        }
+    }
+}
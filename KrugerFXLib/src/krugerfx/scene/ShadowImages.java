@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.BlurType;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderImage;
+import javafx.scene.layout.BorderRepeat;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Transform;
+
+import krugerfx.internal.jfr.LibraryEvents;
+
+/**
+ * A cache of pre-rendered window shadows.
+ *
+ * A shadow is rendered once for a color, radius, corner arc and render scale into a small
+ * nine-slice image and shared, as an immutable {@code Border}, by every window that uses the same
+ * settings. Stretching the image to the window size costs much less than a live
+ * {@code DropShadow} on a window-sized node.
+ *
+ * The cache must be used from the JavaFX Application Thread.
+ *
+ * @author kleberkruger
+ */
+final class ShadowImages {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final Map<Key, Border> cache = new LinkedHashMap<Key, Border>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Border> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private ShadowImages() {
+    }
+
+    /**
+     * Gets a border that paints a shadow around (and outside of) a rectangle inset by the shadow
+     * radius from the region bounds.
+     *
+     * @param color the color of the shadow
+     * @param radius the radius of the shadow
+     * @param arc the arc of the rectangle corners
+     * @param scale the render scale of the window
+     *
+     * @return the shadow border, or {@link Border#EMPTY} if there is no shadow
+     */
+    static Border getShadowBorder(Color color, double radius, double arc, double scale) {
+        if (color == null || radius <= 0) {
+            return Border.EMPTY;
+        }
+        Key key = new Key(color, radius, arc, scale);
+        Border border = cache.get(key);
+        ShadedSceneMetrics.getGlobal().shadowCacheLookup(border != null);
+        if (border == null) {
+            final Object event = LibraryEvents.SHADOW_RENDER.begin();
+            border = createShadowBorder(color, radius, arc, scale);
+            if (event != null) {
+                LibraryEvents.SHADOW_RENDER.commit(event, "image", radius, scale);
+            }
+            cache.put(key, border);
+        }
+        return border;
+    }
+
+    /**
+     * Gets the color of the shadow of a window that is not focused.
+     *
+     * @param base the color of the shadow when focused
+     *
+     * @return a brighter color
+     */
+    static Color getUnfocusedColor(Color base) {
+        for (int i = 0; i < 10; i++) {
+            base = base.brighter();
+        }
+        return base;
+    }
+
+    private static Border createShadowBorder(Color color, double radius, double arc, double scale) {
+        // The blur of an edge spreads over about twice the radius, so the box is long enough for
+        // the middle of each edge slice to see a full-length edge, as a window edge does
+        final double box = radius * 2 + arc;
+        final double size = radius * 2 + box;
+        final double slice = radius + arc / 2;
+
+        final Rectangle shape = new Rectangle(radius, radius, box, box);
+        shape.setArcWidth(arc);
+        shape.setArcHeight(arc);
+        shape.setEffect(new DropShadow(BlurType.THREE_PASS_BOX, color, radius, 0, 0, 0));
+
+        // Only the shadow is kept, the area covered by the window content stays transparent
+        final Rectangle inner = new Rectangle(radius, radius, box, box);
+        inner.setArcWidth(arc);
+        inner.setArcHeight(arc);
+        final Group group = new Group(shape);
+        group.setClip(Shape.subtract(new Rectangle(0, 0, size, size), inner));
+
+        final SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        params.setTransform(Transform.scale(scale, scale));
+        params.setViewport(new Rectangle2D(0, 0, Math.ceil(size * scale), Math.ceil(size * scale)));
+        final Image image = group.snapshot(params, null);
+
+        return new Border(new BorderImage(image, new BorderWidths(slice), Insets.EMPTY,
+                new BorderWidths(slice * scale), false, BorderRepeat.STRETCH, BorderRepeat.STRETCH));
+    }
+
+    private static final class Key {
+
+        private final Color color;
+        private final double radius;
+        private final double arc;
+        private final double scale;
+
+        Key(Color color, double radius, double arc, double scale) {
+            this.color = color;
+            this.radius = radius;
+            this.arc = arc;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return color.equals(other.color) && radius == other.radius && arc == other.arc
+                    && scale == other.scale;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = color.hashCode();
+            hash = 31 * hash + Double.hashCode(radius);
+            hash = 31 * hash + Double.hashCode(arc);
+            hash = 31 * hash + Double.hashCode(scale);
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.stage.Window;
+
+/**
+ * The root of the lightweight shaded windows ({@link ShadedPopup} and {@link ShadedDialog}).
+ *
+ * It has the look of a {@code ShadedScene}, but the shadow comes from the shared
+ * {@link ShadowImages} cache instead of a live {@code DropShadow}, so windows with the same
+ * settings share a single pre-rendered image.
+ *
+ * @author kleberkruger
+ */
+class ShadowPane extends Region {
+
+    private static final double ARC = 0;
+
+    private final Region shadow = new Region();
+
+    private Node content;
+    private Paint fill;
+    private Color shadowColor;
+    private Color unfocusedShadowColor;
+    private double shadowRadius;
+    private boolean shaded = true;
+    private double scale = 1.0;
+
+    ShadowPane(Node content, Paint fill, Color shadowColor, double shadowRadius) {
+        if (content == null) {
+            throw new NullPointerException("Content cannot be null");
+        }
+        checkShadowRadius(shadowRadius);
+
+        this.content = content;
+        this.fill = fill;
+        this.shadowColor = shadowColor;
+        this.unfocusedShadowColor = shadowColor == null ? null : ShadowImages.getUnfocusedColor(shadowColor);
+        this.shadowRadius = shadowRadius;
+
+        getStyleClass().setAll("shadow-pane");
+        shadow.setMouseTransparent(true);
+        shadow.setManaged(false);
+        getChildren().setAll(shadow, content);
+        updateShadow();
+        updateBackground();
+    }
+
+    private static void checkShadowRadius(double radius) {
+        if (radius < 0 || radius > 127) {
+            throw new IllegalArgumentException("Shadow radius value (" + radius + ") must be in the range 0.0 - 127.0");
+        }
+    }
+
+    /**
+     * Makes a window use the stylesheets of its owner. The parsed stylesheets are cached by URL,
+     * so sharing them does not parse any CSS again.
+     *
+     * @param scene the scene of the window
+     * @param owner the owner of the window, may be null
+     */
+    static void shareStylesheets(Scene scene, Window owner) {
+        Scene ownerScene = owner == null ? null : owner.getScene();
+        if (scene != null && ownerScene != null && scene.getStylesheets().isEmpty()) {
+            scene.getStylesheets().setAll(ownerScene.getStylesheets());
+        }
+    }
+
+    private void updateShadow() {
+        Color color = shaded ? shadowColor : unfocusedShadowColor;
+        shadow.setBorder(ShadowImages.getShadowBorder(color, shadowRadius, ARC, scale));
+    }
+
+    private void updateBackground() {
+        shadow.setBackground(fill == null ? Background.EMPTY
+                : new Background(new BackgroundFill(fill, CornerRadii.EMPTY, new Insets(shadowRadius))));
+    }
+
+    final Node getContent() {
+        return content;
+    }
+
+    final void setContent(Node content) {
+        if (content == null) {
+            throw new NullPointerException("Content cannot be null");
+        }
+        this.content = content;
+        getChildren().set(1, content);
+    }
+
+    final Paint getFill() {
+        return fill;
+    }
+
+    final void setFill(Paint fill) {
+        this.fill = fill;
+        updateBackground();
+    }
+
+    final Color getShadowColor() {
+        return shadowColor;
+    }
+
+    final void setShadowColor(Color color) {
+        shadowColor = color;
+        unfocusedShadowColor = color == null ? null : ShadowImages.getUnfocusedColor(color);
+        updateShadow();
+    }
+
+    final double getShadowRadius() {
+        return shadowRadius;
+    }
+
+    final void setShadowRadius(double radius) {
+        checkShadowRadius(radius);
+        shadowRadius = radius;
+        updateShadow();
+        updateBackground();
+        requestLayout();
+    }
+
+    final boolean isShaded() {
+        return shaded;
+    }
+
+    final void setShaded(boolean value) {
+        if (shaded != value) {
+            shaded = value;
+            updateShadow();
+        }
+    }
+
+    /**
+     * Sets the render scale of the window, picking the shadow image rendered for it.
+     *
+     * @param value the render scale
+     */
+    final void setScale(double value) {
+        if (scale != value) {
+            scale = value;
+            updateShadow();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return content.prefWidth(height < 0 ? height : height - shadowRadius * 2) + shadowRadius * 2;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return content.prefHeight(width < 0 ? width : width - shadowRadius * 2) + shadowRadius * 2;
+    }
+
+    @Override
+    protected double computeMinWidth(double height) {
+        return content.minWidth(height < 0 ? height : height - shadowRadius * 2) + shadowRadius * 2;
+    }
+
+    @Override
+    protected double computeMinHeight(double width) {
+        return content.minHeight(width < 0 ? width : width - shadowRadius * 2) + shadowRadius * 2;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double w = getWidth();
+        double h = getHeight();
+        shadow.resizeRelocate(0, 0, w, h);
+        content.resizeRelocate(shadowRadius, shadowRadius,
+                Math.max(0, w - shadowRadius * 2), Math.max(0, h - shadowRadius * 2));
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.BiConsumer;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.event.ActionEvent;
+import javafx.scene.Parent;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.transform.Transform;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+/**
+ * Keeps small, up to date snapshots of the content of every showing {@link ShadedScene}, for
+ * window switchers and similar previews.
+ *
+ * Thumbnails are taken on a schedule, only for the scenes laid out again since their last
+ * thumbnail (or marked with {@link #invalidate(ShadedScene)}), and only a few per run, so that
+ * refreshing many windows is spread over several pulses. Each run starts after the last scene
+ * captured by the previous one, so scenes that change all the time cannot starve the others.
+ * They are rendered downscaled straight from the root of the scene, without the shadow margin,
+ * into images reused from one run to the next. The cache is bounded by the memory of its images;
+ * the least recently used ones are dropped first.
+ *
+ * The service must be used from the JavaFX Application Thread.
+ *
+ * @author kleberkruger
+ */
+public class ThumbnailService {
+
+    private final double maxWidth;
+    private final double maxHeight;
+    private final long maxBytes;
+    private final int capturesPerRun;
+    private final Timeline timeline;
+
+    private final Map<ShadedScene, Thumbnail> thumbnails = new WeakHashMap<>();
+    private long clock;
+    private int next;
+
+    private BiConsumer<ShadedScene, Image> onThumbnailUpdated;
+
+    /**
+     * Creates a service that refreshes, at most four thumbnails each 500 milliseconds, with up to
+     * 32 MB of images.
+     *
+     * @param maxWidth the maximum width of a thumbnail
+     * @param maxHeight the maximum height of a thumbnail
+     */
+    public ThumbnailService(double maxWidth, double maxHeight) {
+        this(maxWidth, maxHeight, Duration.millis(500), 4, 32L * 1024 * 1024);
+    }
+
+    /**
+     * Creates a service.
+     *
+     * @param maxWidth the maximum width of a thumbnail
+     * @param maxHeight the maximum height of a thumbnail
+     * @param interval the interval between two runs
+     * @param capturesPerRun the maximum number of thumbnails taken by a run
+     * @param maxBytes the maximum memory of the cached images, in bytes
+     *
+     * @throws IllegalArgumentException if a size, the number of captures or the memory is not
+     * positive
+     */
+    public ThumbnailService(double maxWidth, double maxHeight, Duration interval, int capturesPerRun, long maxBytes) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Thumbnail size must be positive");
+        } else if (capturesPerRun <= 0) {
+            throw new IllegalArgumentException("Captures per run must be positive");
+        } else if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Maximum memory must be positive");
+        }
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.capturesPerRun = capturesPerRun;
+        this.maxBytes = maxBytes;
+        this.timeline = new Timeline(new KeyFrame(interval, (ActionEvent event) -> {
+            refresh();
+        }));
+        this.timeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Starts taking thumbnails.
+     */
+    public void start() {
+        timeline.play();
+    }
+
+    /**
+     * Stops taking thumbnails. The cached ones are kept.
+     */
+    public void stop() {
+        timeline.stop();
+    }
+
+    /**
+     * Gets the last thumbnail of a scene.
+     *
+     * @param scene the scene
+     *
+     * @return the thumbnail, or {@code null} if there is none yet
+     */
+    public Image getThumbnail(ShadedScene scene) {
+        Thumbnail thumbnail = thumbnails.get(scene);
+        if (thumbnail == null) {
+            return null;
+        }
+        thumbnail.used = ++clock;
+        return thumbnail.image;
+    }
+
+    /**
+     * Makes the next run take a new thumbnail of a scene, even if it was not laid out again (e.g.
+     * when only colors changed).
+     *
+     * @param scene the scene
+     */
+    public void invalidate(ShadedScene scene) {
+        Thumbnail thumbnail = thumbnails.get(scene);
+        if (thumbnail != null) {
+            thumbnail.layoutPasses = -1;
+        }
+    }
+
+    /**
+     * Sets the action called, on the JavaFX Application Thread, after a thumbnail is taken.
+     *
+     * @param action the action, may be null
+     */
+    public void setOnThumbnailUpdated(BiConsumer<ShadedScene, Image> action) {
+        onThumbnailUpdated = action;
+    }
+
+    /**
+     * Takes the thumbnails of the scenes that changed, up to the limit of a run.
+     */
+    public void refresh() {
+        List<ShadedScene> scenes = ShadedSceneRegistry.getScenes();
+        int count = scenes.size();
+        int captures = 0;
+        for (int i = 0; i < count && captures < capturesPerRun; i++) {
+            int index = (next + i) % count;
+            ShadedScene scene = scenes.get(index);
+            Window window = scene.getWindow();
+            if (window == null || !window.isShowing() || scene.getWidth() <= 0 || scene.getHeight() <= 0) {
+                continue;
+            }
+            Thumbnail thumbnail = thumbnails.get(scene);
+            long layoutPasses = scene.getMetrics().getLayoutPasses();
+            if (thumbnail == null || thumbnail.layoutPasses != layoutPasses) {
+                capture(scene, thumbnail, layoutPasses);
+                captures++;
+                next = index + 1;
+            }
+        }
+    }
+
+    private void capture(ShadedScene scene, Thumbnail thumbnail, long layoutPasses) {
+        Parent root = scene.getRoot_();
+        double width = root.getLayoutBounds().getWidth();
+        double height = root.getLayoutBounds().getHeight();
+        double scale = Math.min(1, Math.min(maxWidth / width, maxHeight / height));
+        int imageWidth = (int) Math.max(1, Math.ceil(width * scale));
+        int imageHeight = (int) Math.max(1, Math.ceil(height * scale));
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setTransform(Transform.scale(scale, scale));
+        Paint fill = scene.getFill_();
+        params.setFill(fill == null ? Color.TRANSPARENT : fill);
+
+        // The image of the previous thumbnail is reused when the size did not change
+        WritableImage reuse = thumbnail != null && thumbnail.image.getWidth() == imageWidth
+                && thumbnail.image.getHeight() == imageHeight ? thumbnail.image : null;
+        WritableImage image = root.snapshot(params, reuse);
+
+        if (thumbnail == null) {
+            thumbnail = new Thumbnail();
+            thumbnails.put(scene, thumbnail);
+        }
+        thumbnail.image = image;
+        thumbnail.bytes = (long) image.getWidth() * (long) image.getHeight() * 4;
+        thumbnail.layoutPasses = layoutPasses;
+        thumbnail.used = ++clock;
+        evict(thumbnail);
+
+        if (onThumbnailUpdated != null) {
+            onThumbnailUpdated.accept(scene, image);
+        }
+    }
+
+    /**
+     * Drops the least recently used thumbnails until the cache fits its memory bound.
+     *
+     * @param keep the thumbnail just taken, which is never dropped
+     */
+    private void evict(Thumbnail keep) {
+        // Summed again each time: the map silently drops the thumbnails of collected scenes
+        long bytes = getCachedBytes();
+        while (bytes > maxBytes) {
+            Map.Entry<ShadedScene, Thumbnail> oldest = null;
+            for (Map.Entry<ShadedScene, Thumbnail> entry : thumbnails.entrySet()) {
+                Thumbnail thumbnail = entry.getValue();
+                if (thumbnail != keep && (oldest == null || thumbnail.used < oldest.getValue().used)) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            bytes -= oldest.getValue().bytes;
+            thumbnails.remove(oldest.getKey());
+        }
+    }
+
+    /**
+     * Gets the memory used by the cached thumbnails.
+     *
+     * @return the memory of the images, in bytes
+     */
+    public long getCachedBytes() {
+        long total = 0;
+        for (Thumbnail thumbnail : thumbnails.values()) {
+            total += thumbnail.bytes;
+        }
+        return total;
+    }
+
+    private static final class Thumbnail {
+
+        private WritableImage image;
+        private long bytes;
+        private long layoutPasses;
+        private long used;
+    }
+}
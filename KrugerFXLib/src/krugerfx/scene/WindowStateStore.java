@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.geometry.Bounds;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+/**
+ * Saves and restores the state of windows (bounds, maximized and full screen state, shadow
+ * settings) by window id, in a single file.
+ *
+ * The bounds are the ones of the content, without the shadow margin of a {@link ShadedScene}, so
+ * they still apply if the shadow changes. Changes are collected on the JavaFX Application Thread
+ * and written by a background thread once they stop for a while (debounce), so moving or resizing
+ * a window, or restoring dozens of them, causes a single write. The file is replaced atomically.
+ *
+ * <pre>
+ * WindowStateStore store = new WindowStateStore(Paths.get(home, ".myapp", "windows.properties"));
+ * stage.setScene(new ShadedScene(root));
+ * store.track("main", stage); // restores the saved state, before the stage is shown
+ * stage.show();
+ * </pre>
+ *
+ * @author kleberkruger
+ */
+public class WindowStateStore {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final Path file;
+    private final long debounceMillis;
+
+    private final Map<String, String> states = new ConcurrentHashMap<>();
+    private final Map<String, Tracker> trackers = new HashMap<>();
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "WindowStateStore");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> pendingWrite;
+
+    /**
+     * Creates a store backed by a file, reading the states it already has.
+     *
+     * @param file the file
+     *
+     * @throws NullPointerException if file is null
+     */
+    public WindowStateStore(Path file) {
+        this(file, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Creates a store backed by a file, reading the states it already has.
+     *
+     * @param file the file
+     * @param debounceMillis how long the changes must stop before they are written, in
+     * milliseconds
+     *
+     * @throws NullPointerException if file is null
+     */
+    public WindowStateStore(Path file, long debounceMillis) {
+        if (file == null) {
+            throw new NullPointerException("File cannot be null");
+        }
+        this.file = file;
+        this.debounceMillis = Math.max(0, debounceMillis);
+        load();
+    }
+
+    private void load() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException ex) {
+            return;
+        } catch (IOException ex) {
+            // A damaged file is replaced by the next write
+            return;
+        }
+        for (String id : properties.stringPropertyNames()) {
+            states.put(id, properties.getProperty(id));
+        }
+    }
+
+    /**
+     * Restores the saved state of a window, if there is one, and saves its state whenever it
+     * changes. To avoid a visible jump, it should be called after the scene is set and before the
+     * stage is shown.
+     *
+     * @param id the id of the window
+     * @param stage the stage
+     *
+     * @return {@code true} if a saved state was restored
+     */
+    public boolean track(String id, Stage stage) {
+        untrack(id);
+        // Trackers only hold their stage weakly, the ones of collected stages are dropped here
+        trackers.values().removeIf((Tracker tracker) -> tracker.getStage() == null);
+        boolean restored = restore(id, stage);
+        Tracker tracker = new Tracker(id, stage);
+        trackers.put(id, tracker);
+        tracker.attach();
+        return restored;
+    }
+
+    /**
+     * Stops saving the state of a window.
+     *
+     * @param id the id of the window
+     */
+    public void untrack(String id) {
+        Tracker tracker = trackers.remove(id);
+        if (tracker != null) {
+            tracker.detach();
+        }
+    }
+
+    /**
+     * Applies the saved state of a window.
+     *
+     * @param id the id of the window
+     * @param stage the stage
+     *
+     * @return {@code true} if there was a saved state
+     */
+    public boolean restore(String id, Stage stage) {
+        String value = states.get(id);
+        if (value == null) {
+            return false;
+        }
+        String[] fields = value.split(",");
+        try {
+            double x = Double.parseDouble(fields[0]);
+            double y = Double.parseDouble(fields[1]);
+            double width = Double.parseDouble(fields[2]);
+            double height = Double.parseDouble(fields[3]);
+            boolean maximized = Boolean.parseBoolean(fields[4]);
+            boolean fullScreen = Boolean.parseBoolean(fields[5]);
+
+            Scene scene = stage.getScene();
+            if (scene instanceof ShadedScene && fields.length > 7) {
+                ShadedScene shaded = (ShadedScene) scene;
+                shaded.setShadowColor(fields[6].isEmpty() ? null : Color.web(fields[6]));
+                shaded.setShadowRadius(Double.parseDouble(fields[7]));
+            }
+            double margin = getShadowMargin(stage);
+            stage.setX(x - margin);
+            stage.setY(y - margin);
+            stage.setWidth(width + margin * 2);
+            stage.setHeight(height + margin * 2);
+            if (scene instanceof ShadedScene) {
+                ((ShadedScene) scene).setMaximized(maximized);
+            } else {
+                stage.setMaximized(maximized);
+            }
+            stage.setFullScreen(fullScreen);
+            return true;
+        } catch (RuntimeException ex) {
+            // The saved state is invalid, the window keeps its own
+            states.remove(id);
+            return false;
+        }
+    }
+
+    /**
+     * Records the current state of a window, to be written with the next write.
+     *
+     * @param id the id of the window
+     * @param stage the stage
+     */
+    public void save(String id, Stage stage) {
+        String old = states.get(id);
+        String value;
+        if (isMaximized(stage) || stage.isFullScreen()) {
+            // The bounds are the ones the window goes back to when it is restored
+            Bounds restore = getRestoreBounds(stage);
+            if (old != null) {
+                String[] fields = old.split(",");
+                value = String.join(",", fields[0], fields[1], fields[2], fields[3], format(stage));
+            } else if (restore != null) {
+                value = format(stage, restore.getMinX(), restore.getMinY(), restore.getWidth(), restore.getHeight());
+            } else {
+                // The screen-filling bounds are not worth saving as the normal ones
+                return;
+            }
+        } else {
+            value = format(stage, stage.getX(), stage.getY(), stage.getWidth(), stage.getHeight());
+        }
+        if (!value.equals(old)) {
+            states.put(id, value);
+            scheduleWrite();
+        }
+    }
+
+    private static String format(Stage stage, double x, double y, double width, double height) {
+        double margin = getShadowMargin(stage);
+        return String.format(Locale.ROOT, "%.1f,%.1f,%.1f,%.1f,%s", x + margin, y + margin,
+                width - margin * 2, height - margin * 2, format(stage));
+    }
+
+    private static String format(Stage stage) {
+        Scene scene = stage.getScene();
+        String color = "";
+        double radius = 0;
+        if (scene instanceof ShadedScene) {
+            ShadedScene shaded = (ShadedScene) scene;
+            Color shadowColor = shaded.getShadowColor();
+            color = shadowColor == null ? "" : String.format(Locale.ROOT, "#%02x%02x%02x%02x",
+                    Math.round(shadowColor.getRed() * 255), Math.round(shadowColor.getGreen() * 255),
+                    Math.round(shadowColor.getBlue() * 255), Math.round(shadowColor.getOpacity() * 255));
+            radius = shaded.getShadowRadius();
+        }
+        return String.format(Locale.ROOT, "%b,%b,%s,%.1f", isMaximized(stage), stage.isFullScreen(),
+                color, radius);
+    }
+
+    /**
+     * Tells whether a stage is maximized. The maximize buttons of the library move the stage of a
+     * {@link ShadedScene} instead of maximizing it, so the state is the one of the scene.
+     */
+    private static boolean isMaximized(Stage stage) {
+        Scene scene = stage.getScene();
+        return scene instanceof ShadedScene ? ((ShadedScene) scene).isMaximized() : stage.isMaximized();
+    }
+
+    /**
+     * Gets the bounds a maximized {@link ShadedScene} goes back to when it is restored.
+     */
+    private static Bounds getRestoreBounds(Stage stage) {
+        Scene scene = stage.getScene();
+        Bounds bounds = scene instanceof ShadedScene ? ((ShadedScene) scene).getRestoreBounds() : null;
+        return bounds == null || Double.isNaN(bounds.getMinX()) || Double.isNaN(bounds.getMinY()) ? null : bounds;
+    }
+
+    private static double getShadowMargin(Stage stage) {
+        Scene scene = stage.getScene();
+        if (scene instanceof ShadedScene && ((ShadedScene) scene).getShadowColor() != null) {
+            return ((ShadedScene) scene).getShadowRadius();
+        }
+        return 0;
+    }
+
+    private synchronized void scheduleWrite() {
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+        }
+        pendingWrite = writer.schedule(this::write, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the recorded states now, waiting for the write to finish. It should be called when
+     * the application exits.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (pendingWrite != null) {
+                pendingWrite.cancel(false);
+                pendingWrite = null;
+            }
+        }
+        try {
+            writer.submit(this::write).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // The states are kept in memory and written again with the next change
+        }
+    }
+
+    private void write() {
+        Properties properties = new Properties();
+        properties.putAll(states);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temporary)) {
+                    properties.store(out, "Window states");
+                }
+                try {
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    // Some file systems cannot replace a file atomically
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException ex) {
+            // The states are kept in memory and written again with the next change
+        }
+    }
+
+    /**
+     * Saves the state of a stage whenever its bounds or its maximized or full screen state change.
+     * The stage is held weakly, so a tracked window that is never untracked can still be collected.
+     */
+    private final class Tracker {
+
+        private final String id;
+        private final WeakReference<Stage> stage;
+        private WeakReference<ShadedScene> scene;
+
+        private final InvalidationListener listener = (Observable observable) -> {
+            Tracker.this.changed();
+        };
+
+        Tracker(String id, Stage stage) {
+            this.id = id;
+            this.stage = new WeakReference<>(stage);
+        }
+
+        Stage getStage() {
+            return stage.get();
+        }
+
+        void attach() {
+            Stage s = stage.get();
+            if (s == null) {
+                return;
+            }
+            s.xProperty().addListener(listener);
+            s.yProperty().addListener(listener);
+            s.widthProperty().addListener(listener);
+            s.heightProperty().addListener(listener);
+            s.maximizedProperty().addListener(listener);
+            s.fullScreenProperty().addListener(listener);
+            if (s.getScene() instanceof ShadedScene) {
+                ShadedScene shaded = (ShadedScene) s.getScene();
+                shaded.maximizedProperty().addListener(listener);
+                scene = new WeakReference<>(shaded);
+            }
+        }
+
+        void detach() {
+            Stage s = stage.get();
+            if (s != null) {
+                s.xProperty().removeListener(listener);
+                s.yProperty().removeListener(listener);
+                s.widthProperty().removeListener(listener);
+                s.heightProperty().removeListener(listener);
+                s.maximizedProperty().removeListener(listener);
+                s.fullScreenProperty().removeListener(listener);
+            }
+            ShadedScene shaded = scene == null ? null : scene.get();
+            if (shaded != null) {
+                shaded.maximizedProperty().removeListener(listener);
+            }
+            scene = null;
+        }
+
+        private void changed() {
+            Stage s = stage.get();
+            if (s != null && s.isShowing() && !Double.isNaN(s.getX()) && !Double.isNaN(s.getY())) {
+                save(id, s);
+            }
+        }
+    }
+}
@@ -0,0 +1,656 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene.control;
+
+import com.sun.javafx.css.converters.PaintConverter;
+import com.sun.javafx.css.converters.SizeConverter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.WeakInvalidationListener;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.beans.value.WeakChangeListener;
+import javafx.css.CssMetaData;
+import javafx.css.SimpleStyleableDoubleProperty;
+import javafx.css.SimpleStyleableObjectProperty;
+import javafx.css.Styleable;
+import javafx.css.StyleableDoubleProperty;
+import javafx.css.StyleableObjectProperty;
+import javafx.css.StyleableProperty;
+import javafx.collections.ObservableList;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Insets;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.transform.Scale;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+import krugerfx.internal.jfr.LibraryEvents;
+import krugerfx.internal.scene.control.Stylesheets;
+import krugerfx.internal.stage.RenderScale;
+import krugerfx.scene.ShadedScene;
+
+/**
+ * A lightweight alternative to {@link StageButtons} that paints all of its buttons on a single
+ * {@code Canvas}. It does its own hit testing and keeps the hover and pressed states itself, so a
+ * window's title bar buttons cost one styled node instead of a control, a skin and up to four
+ * {@link StageButton}s.
+ *
+ * @author kleberkruger
+ */
+public class CompactStageButtons extends Region {
+
+    private static final String osName = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+
+    private final Canvas canvas = new Canvas();
+    private final Scale canvasScale = new Scale();
+
+    private List<StageButtonType> buttonTypes;
+
+    private int hoverIndex = -1;
+    private int pressedIndex = -1;
+
+    private BoundingBox savedBounds;
+
+    private Window trackedWindow;
+    private double renderScale;
+
+    private final InvalidationListener windowMovedListener = (Observable observable) -> {
+        updateRenderScale();
+    };
+
+    private final ChangeListener<Window> windowListener = (ObservableValue<? extends Window> observable, Window oldWindow, Window newWindow) -> {
+        trackWindow(newWindow);
+    };
+
+    // The scene and the window may outlive this control, so they only hold weak references to it
+    private final WeakInvalidationListener weakWindowMovedListener = new WeakInvalidationListener(windowMovedListener);
+    private final WeakChangeListener<Window> weakWindowListener = new WeakChangeListener<>(windowListener);
+
+    /**
+     * Creates a default {@code CompactStageButtons}.
+     */
+    public CompactStageButtons() {
+        initialize();
+    }
+
+    /**
+     * Creates a {@code CompactStageButtons}.
+     *
+     * @param type the type of stage buttons
+     *
+     * @throws NullPointerException if type is null
+     */
+    public CompactStageButtons(StageButtonsType type) {
+        setType(type);
+        initialize();
+    }
+
+    private void initialize() {
+        getStyleClass().setAll("compact-stage-buttons");
+        buttonTypes = getType().getButtonTypes();
+        // The canvas is sized in device pixels and scaled back, so the glyphs stay crisp on HiDPI
+        canvas.getTransforms().setAll(canvasScale);
+        getChildren().setAll(canvas);
+        addMouseListeners();
+        addSceneListener();
+    }
+
+    private void addSceneListener() {
+        sceneProperty().addListener((ObservableValue<? extends Scene> observable, Scene oldScene, Scene newScene) -> {
+            if (oldScene != null) {
+                oldScene.windowProperty().removeListener(weakWindowListener);
+            }
+            if (newScene != null) {
+                newScene.windowProperty().addListener(weakWindowListener);
+            }
+            trackWindow(newScene == null ? null : newScene.getWindow());
+        });
+    }
+
+    /**
+     * Follows the position of the window so that the canvas is repainted when it moves to a screen
+     * with another render scale.
+     *
+     * @param window the window that shows this control
+     */
+    private void trackWindow(Window window) {
+        if (trackedWindow != null) {
+            trackedWindow.xProperty().removeListener(weakWindowMovedListener);
+            trackedWindow.yProperty().removeListener(weakWindowMovedListener);
+        }
+        trackedWindow = window;
+        if (window != null) {
+            window.xProperty().addListener(weakWindowMovedListener);
+            window.yProperty().addListener(weakWindowMovedListener);
+            updateRenderScale();
+        }
+    }
+
+    private void updateRenderScale() {
+        double scale = RenderScale.of(trackedWindow);
+        if (scale != renderScale) {
+            renderScale = scale;
+            requestLayout();
+        }
+    }
+
+    private void addMouseListeners() {
+        setOnMouseMoved((MouseEvent event) -> {
+            setHoverIndex(indexAt(event.getX(), event.getY()));
+        });
+        setOnMouseExited((MouseEvent event) -> {
+            hoverIndex = -1;
+            pressedIndex = -1;
+            paint();
+        });
+        setOnMousePressed((MouseEvent event) -> {
+            if (event.getButton() == MouseButton.PRIMARY) {
+                pressedIndex = indexAt(event.getX(), event.getY());
+                paint();
+                event.consume();
+            }
+        });
+        setOnMouseDragged((MouseEvent event) -> {
+            setHoverIndex(indexAt(event.getX(), event.getY()));
+            event.consume();
+        });
+        setOnMouseReleased((MouseEvent event) -> {
+            int index = pressedIndex;
+            pressedIndex = -1;
+            paint();
+            if (index != -1 && index == indexAt(event.getX(), event.getY())) {
+                fire(buttonTypes.get(index));
+            }
+            event.consume();
+        });
+    }
+
+    private void setHoverIndex(int index) {
+        if (hoverIndex != index) {
+            hoverIndex = index;
+            paint();
+        }
+    }
+
+    /**
+     * Gets the index of the button under the given point, in local coordinates.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     *
+     * @return the index of the button or -1 if there is no button at this point
+     */
+    private int indexAt(double x, double y) {
+        double cx = x - canvas.getLayoutX();
+        double cy = y - canvas.getLayoutY();
+        if (cx < 0 || cy < 0 || cx >= buttonTypes.size() * getButtonWidth() || cy >= getButtonHeight()) {
+            return -1;
+        }
+        int index = (int) (cx / getButtonWidth());
+        return index < buttonTypes.size() ? index : -1;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Painting">
+    private void paint() {
+        final GraphicsContext gc = canvas.getGraphicsContext2D();
+        final double w = getButtonWidth();
+        final double h = getButtonHeight();
+        final double scale = 1 / canvasScale.getX();
+
+        // Paints in logical coordinates, the transform maps them to the device pixels of the canvas
+        gc.setTransform(scale, 0, 0, scale, 0, 0);
+        gc.clearRect(0, 0, buttonTypes.size() * w, h);
+        gc.setStroke(getGlyphFill());
+        gc.setLineWidth(1);
+
+        for (int i = 0; i < buttonTypes.size(); i++) {
+            double x = i * w;
+            if (i == hoverIndex || i == pressedIndex) {
+                gc.setFill(getHoverFill());
+                gc.fillRect(x, 0, w, h);
+                if (i == pressedIndex && i == hoverIndex) {
+                    gc.fillRect(x, 0, w, h);
+                }
+            }
+            paintGlyph(gc, buttonTypes.get(i), x, w, h);
+        }
+    }
+
+    private void paintGlyph(GraphicsContext gc, StageButtonType type, double x, double w, double h) {
+        // The glyph fills a centered square of 40% of the smaller button dimension
+        final double size = Math.floor(Math.min(w, h) * 0.4);
+        final double left = Math.floor(x + (w - size) / 2) + 0.5;
+        final double top = Math.floor((h - size) / 2) + 0.5;
+
+        StageButtonGlyphs.paintGlyph(gc, type, left, top, size);
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="Actions">
+    private void fire(StageButtonType type) {
+        Scene scene = getScene();
+        Window window = scene == null ? null : scene.getWindow();
+        if (!(window instanceof Stage)) {
+            return;
+        }
+        final Stage stage = (Stage) window;
+        switch (type) {
+            case CLOSE:
+                Platform.runLater(() -> {
+                    stage.fireEvent(new WindowEvent(stage, WindowEvent.WINDOW_CLOSE_REQUEST));
+                });
+                break;
+            case MINIMIZE: {
+                Object event = LibraryEvents.WINDOW_STATE.begin();
+                stage.setIconified(true);
+                if (event != null) {
+                    LibraryEvents.WINDOW_STATE.commit(event, "minimize");
+                }
+                break;
+            }
+            case MAXIMIZE: {
+                Object event = LibraryEvents.WINDOW_STATE.begin();
+                boolean maximized = toggleMaximized(stage);
+                if (event != null) {
+                    LibraryEvents.WINDOW_STATE.commit(event, maximized ? "maximize" : "restore");
+                }
+                break;
+            }
+            case FULLSCREEN:
+                // Invoke runLater even if it's on EDT: Crash apps on Mac?
+                Platform.runLater(() -> {
+                    boolean value = !stage.isFullScreen();
+                    Object event = LibraryEvents.WINDOW_STATE.begin();
+                    stage.setFullScreen(value);
+                    if (event != null) {
+                        LibraryEvents.WINDOW_STATE.commit(event, value ? "enter-fullscreen" : "exit-fullscreen");
+                    }
+                });
+                break;
+        }
+    }
+
+    /**
+     * Maximizes the stage, or restores it.
+     *
+     * @param stage the stage
+     *
+     * @return {@code true} if the stage was maximized
+     */
+    private boolean toggleMaximized(Stage stage) {
+        if (getScene() instanceof ShadedScene) {
+            // The scene keeps the maximized state, so it can be saved and restored
+            ShadedScene scene = (ShadedScene) getScene();
+            scene.setMaximized(!scene.isMaximized());
+            return scene.isMaximized();
+        } else if (savedBounds != null) {
+            stage.setX(savedBounds.getMinX());
+            stage.setY(savedBounds.getMinY());
+            stage.setWidth(savedBounds.getWidth());
+            stage.setHeight(savedBounds.getHeight());
+            savedBounds = null;
+            return false;
+        } else {
+            Scene scene = getScene();
+            double d = scene instanceof ShadedScene ? ((ShadedScene) scene).getShadowRadius() : 0;
+
+            ObservableList<Screen> screensForRectangle = Screen.getScreensForRectangle(
+                    stage.getX(), stage.getY(), stage.getWidth(), stage.getHeight());
+            Screen screen = screensForRectangle.isEmpty() ? Screen.getPrimary() : screensForRectangle.get(0);
+            Rectangle2D visualBounds = screen.getVisualBounds();
+            savedBounds = new BoundingBox(stage.getX(), stage.getY(), stage.getWidth(), stage.getHeight());
+            stage.setX(visualBounds.getMinX() - d);
+            stage.setY(visualBounds.getMinY() - d);
+            stage.setWidth(visualBounds.getWidth() + d * 2);
+            stage.setHeight(visualBounds.getHeight() + d * 2);
+            return true;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="Layout">
+    @Override
+    protected double computePrefWidth(double height) {
+        Insets insets = getInsets();
+        return insets.getLeft() + buttonTypes.size() * getButtonWidth() + insets.getRight();
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        Insets insets = getInsets();
+        return insets.getTop() + getButtonHeight() + insets.getBottom();
+    }
+
+    @Override
+    protected double computeMinWidth(double height) {
+        return computePrefWidth(height);
+    }
+
+    @Override
+    protected double computeMinHeight(double width) {
+        return computePrefHeight(width);
+    }
+
+    @Override
+    protected double computeMaxWidth(double height) {
+        return computePrefWidth(height);
+    }
+
+    @Override
+    protected double computeMaxHeight(double width) {
+        return computePrefHeight(width);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.relocate(snappedLeftInset(), snappedTopInset());
+        double scale = renderScale == 0 ? RenderScale.of(this) : renderScale;
+        canvasScale.setX(1 / scale);
+        canvasScale.setY(1 / scale);
+        canvas.setWidth(Math.ceil(buttonTypes.size() * getButtonWidth() * scale));
+        canvas.setHeight(Math.ceil(getButtonHeight() * scale));
+        paint();
+    }
+    //</editor-fold>
+
+    /**
+     * An implementation may specify its own user-agent styles for this Region, and its children, by
+     * overriding this method.
+     *
+     * @return A string URL
+     *
+     * @since JavaFX 8u40
+     */
+    @Override
+    public String getUserAgentStylesheet() {
+        return Stylesheets.getUserAgentStylesheet(CompactStageButtons.class);
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Properties">
+    private StageButtonsType getDefaultType() {
+        return osName.contains("windows")
+                ? StageButtonsType.MINIMIZE_MAXIMIZE_CLOSE
+                : StageButtonsType.CLOSE_MINIMIZE_MAXIMIZE;
+    }
+
+    private ObjectProperty<StageButtonsType> type;
+
+    /**
+     * The type of stage buttons. A {@code null} value, which only a binding can set, shows the
+     * buttons of the default type of the platform.
+     *
+     * @return the type property
+     */
+    public final ObjectProperty<StageButtonsType> typeProperty() {
+        if (type == null) {
+            type = new SimpleObjectProperty<StageButtonsType>(CompactStageButtons.this, "type", getDefaultType()) {
+
+                @Override
+                protected void invalidated() {
+                    // setType rejects null, but a binding can still bring it
+                    StageButtonsType value = get();
+                    buttonTypes = (value == null ? getDefaultType() : value).getButtonTypes();
+                    hoverIndex = -1;
+                    pressedIndex = -1;
+                    requestLayout();
+                }
+            };
+        }
+        return type;
+    }
+
+    /**
+     * @return the type
+     */
+    public final StageButtonsType getType() {
+        return type == null ? getDefaultType() : type.get();
+    }
+
+    /**
+     * @param type the type to set
+     *
+     * @throws NullPointerException if type is null
+     */
+    public final void setType(StageButtonsType type) {
+        if (type == null) {
+            throw new NullPointerException("Type cannot be null");
+        }
+        typeProperty().set(type);
+    }
+
+    private final StyleableDoubleProperty buttonWidth = new SimpleStyleableDoubleProperty(
+            StyleableProperties.BUTTON_WIDTH, CompactStageButtons.this, "buttonWidth",
+            StyleableProperties.DEFAULT_SIZE) {
+
+                @Override
+                protected void invalidated() {
+                    requestLayout();
+                }
+            };
+
+    /**
+     * The width of each button. It can be set through the {@code -fx-stage-button-width} CSS
+     * property.
+     *
+     * @return the button width property
+     */
+    public final StyleableDoubleProperty buttonWidthProperty() {
+        return buttonWidth;
+    }
+
+    public final double getButtonWidth() {
+        return buttonWidth.get();
+    }
+
+    public final void setButtonWidth(double value) {
+        buttonWidth.set(value);
+    }
+
+    private final StyleableDoubleProperty buttonHeight = new SimpleStyleableDoubleProperty(
+            StyleableProperties.BUTTON_HEIGHT, CompactStageButtons.this, "buttonHeight",
+            StyleableProperties.DEFAULT_SIZE) {
+
+                @Override
+                protected void invalidated() {
+                    requestLayout();
+                }
+            };
+
+    /**
+     * The height of each button. It can be set through the {@code -fx-stage-button-height} CSS
+     * property.
+     *
+     * @return the button height property
+     */
+    public final StyleableDoubleProperty buttonHeightProperty() {
+        return buttonHeight;
+    }
+
+    public final double getButtonHeight() {
+        return buttonHeight.get();
+    }
+
+    public final void setButtonHeight(double value) {
+        buttonHeight.set(value);
+    }
+
+    private final StyleableObjectProperty<Paint> glyphFill = new SimpleStyleableObjectProperty<Paint>(
+            StyleableProperties.GLYPH_FILL, CompactStageButtons.this, "glyphFill",
+            StyleableProperties.DEFAULT_GLYPH_FILL) {
+
+                @Override
+                protected void invalidated() {
+                    paint();
+                }
+            };
+
+    /**
+     * The paint used to draw the button glyphs. It can be set through the {@code -fx-glyph-fill}
+     * CSS property.
+     *
+     * @return the glyph fill property
+     */
+    public final StyleableObjectProperty<Paint> glyphFillProperty() {
+        return glyphFill;
+    }
+
+    public final Paint getGlyphFill() {
+        return glyphFill.get();
+    }
+
+    public final void setGlyphFill(Paint value) {
+        glyphFill.set(value);
+    }
+
+    private final StyleableObjectProperty<Paint> hoverFill = new SimpleStyleableObjectProperty<Paint>(
+            StyleableProperties.HOVER_FILL, CompactStageButtons.this, "hoverFill",
+            StyleableProperties.DEFAULT_HOVER_FILL) {
+
+                @Override
+                protected void invalidated() {
+                    paint();
+                }
+            };
+
+    /**
+     * The paint used behind a hovered button; a pressed button is painted with it twice. It can be
+     * set through the {@code -fx-hover-fill} CSS property.
+     *
+     * @return the hover fill property
+     */
+    public final StyleableObjectProperty<Paint> hoverFillProperty() {
+        return hoverFill;
+    }
+
+    public final Paint getHoverFill() {
+        return hoverFill.get();
+    }
+
+    public final void setHoverFill(Paint value) {
+        hoverFill.set(value);
+    }
+    //</editor-fold>
+
+    private static class StyleableProperties {
+
+        private static final double DEFAULT_SIZE = 25.0;
+        private static final Paint DEFAULT_GLYPH_FILL = Color.web("#333333");
+        private static final Paint DEFAULT_HOVER_FILL = Color.rgb(0, 0, 0, 0.1);
+
+        private static final CssMetaData<CompactStageButtons, Number> BUTTON_WIDTH
+                = new CssMetaData<CompactStageButtons, Number>("-fx-stage-button-width",
+                        SizeConverter.getInstance(), DEFAULT_SIZE) {
+
+                    @Override
+                    public boolean isSettable(CompactStageButtons sb) {
+                        return !sb.buttonWidth.isBound();
+                    }
+
+                    @Override
+                    public StyleableProperty<Number> getStyleableProperty(CompactStageButtons sb) {
+                        return sb.buttonWidth;
+                    }
+                };
+
+        private static final CssMetaData<CompactStageButtons, Number> BUTTON_HEIGHT
+                = new CssMetaData<CompactStageButtons, Number>("-fx-stage-button-height",
+                        SizeConverter.getInstance(), DEFAULT_SIZE) {
+
+                    @Override
+                    public boolean isSettable(CompactStageButtons sb) {
+                        return !sb.buttonHeight.isBound();
+                    }
+
+                    @Override
+                    public StyleableProperty<Number> getStyleableProperty(CompactStageButtons sb) {
+                        return sb.buttonHeight;
+                    }
+                };
+
+        private static final CssMetaData<CompactStageButtons, Paint> GLYPH_FILL
+                = new CssMetaData<CompactStageButtons, Paint>("-fx-glyph-fill",
+                        PaintConverter.getInstance(), DEFAULT_GLYPH_FILL) {
+
+                    @Override
+                    public boolean isSettable(CompactStageButtons sb) {
+                        return !sb.glyphFill.isBound();
+                    }
+
+                    @Override
+                    public StyleableProperty<Paint> getStyleableProperty(CompactStageButtons sb) {
+                        return sb.glyphFill;
+                    }
+                };
+
+        private static final CssMetaData<CompactStageButtons, Paint> HOVER_FILL
+                = new CssMetaData<CompactStageButtons, Paint>("-fx-hover-fill",
+                        PaintConverter.getInstance(), DEFAULT_HOVER_FILL) {
+
+                    @Override
+                    public boolean isSettable(CompactStageButtons sb) {
+                        return !sb.hoverFill.isBound();
+                    }
+
+                    @Override
+                    public StyleableProperty<Paint> getStyleableProperty(CompactStageButtons sb) {
+                        return sb.hoverFill;
+                    }
+                };
+
+        private static final List<CssMetaData<? extends Styleable, ?>> STYLEABLES;
+
+        static {
+            final List<CssMetaData<? extends Styleable, ?>> styleables
+                    = new ArrayList<>(Region.getClassCssMetaData());
+            Collections.addAll(styleables, BUTTON_WIDTH, BUTTON_HEIGHT, GLYPH_FILL, HOVER_FILL);
+            STYLEABLES = Collections.unmodifiableList(styleables);
+        }
+    }
+
+    /**
+     * @return The CssMetaData associated with this class, which may include the CssMetaData of its
+     * super classes.
+     */
+    public static List<CssMetaData<? extends Styleable, ?>> getClassCssMetaData() {
+        return StyleableProperties.STYLEABLES;
+    }
+
+    @Override
+    public List<CssMetaData<? extends Styleable, ?>> getCssMetaData() {
+        return getClassCssMetaData();
+    }
+}
@@ -21,6 +21,8 @@ import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.scene.Node;
 import javafx.stage.Stage;
 
+import krugerfx.internal.jfr.LibraryEvents;
+
 /**
  *
  * @author kleberkruger
@@ -45,7 +47,11 @@ public class FullScreenButton extends StageButton {
 
     private void setFullScreen(boolean value) {
         Stage stage = (Stage) getScene().getWindow();
+        Object event = LibraryEvents.WINDOW_STATE.begin();
         stage.setFullScreen(value);
+        if (event != null) {
+            LibraryEvents.WINDOW_STATE.commit(event, value ? "enter-fullscreen" : "exit-fullscreen");
+        }
     }
 
     @Override
@@ -24,6 +24,8 @@ import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+
+import krugerfx.internal.jfr.LibraryEvents;
 import krugerfx.scene.ShadedScene;
 
 /**
@@ -74,8 +76,14 @@ public class MaximizeButton extends StageButton {
         
         // Implementação antiga
         Stage stage = (Stage) getScene().getWindow();
+        Object event = LibraryEvents.WINDOW_STATE.begin();
 
-        if (maximized) {
+        if (getScene() instanceof ShadedScene) {
+            // The scene keeps the maximized state, so it can be saved and restored
+            ShadedScene scene = (ShadedScene) getScene();
+            scene.setMaximized(!scene.isMaximized());
+            maximized = scene.isMaximized();
+        } else if (maximized) {
             restoreSavedBounds(stage);
             savedBounds = null;
             maximized = false;
@@ -95,6 +103,9 @@ public class MaximizeButton extends StageButton {
             stage.setHeight(visualBounds.getHeight() + d * 2);
             maximized = true;
         }
+        if (event != null) {
+            LibraryEvents.WINDOW_STATE.commit(event, maximized ? "maximize" : "restore");
+        }
     }
 
     @Override
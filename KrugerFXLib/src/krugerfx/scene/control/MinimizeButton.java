@@ -21,6 +21,8 @@ import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.scene.Node;
 import javafx.stage.Stage;
 
+import krugerfx.internal.jfr.LibraryEvents;
+
 /**
  *
  * @author kleberkruger
@@ -45,7 +47,11 @@ public class MinimizeButton extends StageButton {
 
     private void minimize() {
         Stage stage = (Stage) getScene().getWindow();
+        Object event = LibraryEvents.WINDOW_STATE.begin();
         stage.setIconified(true);
+        if (event != null) {
+            LibraryEvents.WINDOW_STATE.commit(event, "minimize");
+        }
     }
 
     @Override
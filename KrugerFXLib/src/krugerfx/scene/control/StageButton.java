@@ -24,7 +24,6 @@ import java.util.List;
 
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
-import javafx.beans.value.ObservableValue;
 import javafx.beans.value.WritableValue;
 import javafx.css.CssMetaData;
 import javafx.css.PseudoClass;
@@ -34,6 +33,9 @@ import javafx.event.ActionEvent;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.Control;
+import javafx.scene.image.ImageView;
+
+import krugerfx.internal.stage.RenderScale;
 
 /**
  *
@@ -41,12 +43,21 @@ import javafx.scene.control.Control;
  */
 public abstract class StageButton extends Button {
 
+    private ImageView glyph;
+    private StageButtonsStyle glyphStyle = StageButtonsStyle.SIMPLE;
+    private double glyphScale;
+
     /**
-     * Creates a abstract {@code StageButton}.
+     * Creates a abstract {@code StageButton} showing its glyph from the shared
+     * {@link StageButtonGlyphs} atlas.
      */
     public StageButton() {
         super();
         initialize();
+        glyph = new ImageView();
+        glyph.setFitWidth(StageButtonGlyphs.GLYPH_SIZE);
+        glyph.setFitHeight(StageButtonGlyphs.GLYPH_SIZE);
+        setGraphic(glyph);
     }
 
     /**
@@ -60,13 +71,15 @@ public abstract class StageButton extends Button {
     }
 
     private void initialize() {
-        addResizeListener();
+        // The button has a fixed size: min and max follow the pref size (which can be set by the
+        // -fx-stage-button-width/height CSS properties) without listeners, so a size change from
+        // CSS invalidates a single property and requests a single layout.
+        setMinSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
         getStyleClass().add(getType().toString().toLowerCase());
         setFocusTraversable(false);
         setOnAction((ActionEvent event) -> {
             actuatedPropertyImpl().set(!actuatedPropertyImpl().get());
-        });
-        actuatedProperty().addListener((observable, oldValue, newValue) -> {
             action();
         });
 
@@ -75,29 +88,6 @@ public abstract class StageButton extends Button {
         // TODO: Utilizar os próprios listeners, propriedades e funções do Stage para fechar, minimizar, maximizar e fullscreen
     }
 
-    private void addResizeListener() {
-        prefWidthProperty().addListener((ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> {
-            double w = newValue.doubleValue();
-            double min = getMinWidth();
-            if (min == -1 || w < min) {
-                setMinWidth(w);
-            }
-            if (w > getMaxWidth()) {
-                setMaxWidth(w);
-            }
-        });
-        prefHeightProperty().addListener((ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> {
-            double h = newValue.doubleValue();
-            double min = getMinHeight();
-            if (min == -1 || h < min) {
-                setMinHeight(h);
-            }
-            if (h > getMaxHeight()) {
-                setMaxHeight(h);
-            }
-        });
-    }
-
     private void registerPseudoClass() {
         switch (getType()) {
             case CLOSE:
@@ -115,6 +105,41 @@ public abstract class StageButton extends Button {
         }
     }
 
+    @Override
+    protected void layoutChildren() {
+        updateGlyph(RenderScale.of(this));
+        super.layoutChildren();
+    }
+
+    /**
+     * Points the glyph to the atlas of the current style and render scale, if this button still
+     * shows the shared glyph.
+     *
+     * @param scale the render scale of the window
+     */
+    void updateGlyph(double scale) {
+        if (glyph != null && getGraphic() == glyph && (scale != glyphScale || glyph.getImage() == null)) {
+            glyphScale = scale;
+            glyph.setImage(StageButtonGlyphs.getAtlas(glyphStyle, scale));
+            glyph.setViewport(StageButtonGlyphs.getViewport(getType(), scale));
+        }
+    }
+
+    /**
+     * Sets the style of the shared glyph.
+     *
+     * @param style the style
+     */
+    void setGlyphStyle(StageButtonsStyle style) {
+        if (glyphStyle != style) {
+            glyphStyle = style;
+            if (glyph != null) {
+                glyph.setImage(null);
+                updateGlyph(glyphScale == 0 ? RenderScale.of(this) : glyphScale);
+            }
+        }
+    }
+
     private ReadOnlyBooleanWrapper actuated;
 
     public final boolean isActuated() {
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 kleberkruger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package krugerfx.scene.control;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+/**
+ * A shared atlas with the close, minimize, maximize and fullscreen glyphs of the
+ * {@link StageButton}s.
+ *
+ * The glyphs of a {@link StageButtonsStyle} are rasterized once per render scale into a single
+ * image, one cell per {@link StageButtonType}, and every button shows its cell through an
+ * {@code ImageView} viewport. This way, windows do not build their own icon nodes or images, and
+ * the icons stay crisp on HiDPI screens because each scale has its own image.
+ *
+ * The atlas must be used from the JavaFX Application Thread.
+ *
+ * @author kleberkruger
+ */
+public final class StageButtonGlyphs {
+
+    /**
+     * The size of a glyph, in logical pixels.
+     */
+    public static final double GLYPH_SIZE = 10;
+
+    /**
+     * Gap between cells, in physical pixels, so that smoothing never samples the neighbor glyph.
+     */
+    private static final int GAP = 1;
+
+    private static final StageButtonType[] TYPES = StageButtonType.values();
+
+    private static final Map<StageButtonsStyle, Map<Double, Image>> atlases = new EnumMap<>(StageButtonsStyle.class);
+
+    private StageButtonGlyphs() {
+    }
+
+    /**
+     * Gets the atlas of a style rendered for a scale, creating it on the first request.
+     *
+     * @param style the style of the glyphs
+     * @param scale the render scale of the window (1.0, 1.5, 2.0, ...)
+     *
+     * @return the atlas image
+     */
+    public static Image getAtlas(StageButtonsStyle style, double scale) {
+        Map<Double, Image> images = atlases.get(style);
+        if (images == null) {
+            images = new HashMap<>(4);
+            atlases.put(style, images);
+        }
+        Image atlas = images.get(scale);
+        if (atlas == null) {
+            atlas = createAtlas(style, scale);
+            images.put(scale, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Gets the region of the atlas that holds the glyph of a button type.
+     *
+     * @param type the button type
+     * @param scale the render scale the atlas was created for
+     *
+     * @return the viewport of the glyph within the atlas
+     */
+    public static Rectangle2D getViewport(StageButtonType type, double scale) {
+        int cell = getCellSize(scale);
+        return new Rectangle2D(type.ordinal() * (cell + GAP), 0, cell, cell);
+    }
+
+    private static int getCellSize(double scale) {
+        return (int) Math.ceil(GLYPH_SIZE * scale);
+    }
+
+    private static Image createAtlas(StageButtonsStyle style, double scale) {
+        int cell = getCellSize(scale);
+        Canvas canvas = new Canvas(TYPES.length * (cell + GAP), cell);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.scale(scale, scale);
+        gc.setStroke(getGlyphFill(style));
+        gc.setLineWidth(getLineWidth(style));
+
+        // Strokes are centered on the half pixel so that 1px lines are not blurred at 1.0
+        double inset = 0.5;
+        for (StageButtonType type : TYPES) {
+            double left = type.ordinal() * (cell + GAP) / scale;
+            paintGlyph(gc, type, left + inset, inset, GLYPH_SIZE - inset * 2);
+        }
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(params, null);
+    }
+
+    private static Paint getGlyphFill(StageButtonsStyle style) {
+        switch (style) {
+            case WINDOWS_XP:
+            case WINDOWS_7:
+            case WINDOWS_8:
+                return Color.WHITE;
+            case MAC_OS_MAVERICKS:
+            case MAC_OS_YOSEMITE:
+                return Color.rgb(0, 0, 0, 0.5);
+            case MAC_OS_MAVERICKS_GRAY:
+            case MAC_OS_YOSEMITE_GRAY:
+                return Color.rgb(0, 0, 0, 0.35);
+            default:
+                return Color.web("#333333");
+        }
+    }
+
+    private static double getLineWidth(StageButtonsStyle style) {
+        switch (style) {
+            case WINDOWS_XP:
+            case WINDOWS_7:
+            case LINUX_KDE:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Paints the glyph of a button type within a square.
+     *
+     * @param gc the graphics context, with stroke and line width already set
+     * @param type the button type
+     * @param left the left of the square
+     * @param top the top of the square
+     * @param size the size of the square
+     */
+    static void paintGlyph(GraphicsContext gc, StageButtonType type, double left, double top, double size) {
+        final double right = left + size;
+        final double bottom = top + size;
+
+        switch (type) {
+            case CLOSE:
+                gc.strokeLine(left, top, right, bottom);
+                gc.strokeLine(left, bottom, right, top);
+                break;
+            case MINIMIZE:
+                gc.strokeLine(left, bottom, right, bottom);
+                break;
+            case MAXIMIZE:
+                gc.strokeRect(left, top, size, size);
+                break;
+            case FULLSCREEN:
+                final double tip = Math.floor(size / 3);
+                gc.strokeLine(left, top, right, bottom);
+                gc.strokePolyline(new double[]{left, left, left + tip},
+                        new double[]{top + tip, top, top}, 3);
+                gc.strokePolyline(new double[]{right - tip, right, right},
+                        new double[]{bottom, bottom, bottom - tip}, 3);
+                break;
+        }
+    }
+}
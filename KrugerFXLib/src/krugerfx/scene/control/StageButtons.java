@@ -16,12 +16,20 @@
  */
 package krugerfx.scene.control;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.WeakInvalidationListener;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.beans.value.WeakChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.BoundingBox;
@@ -31,9 +39,13 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Skin;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 import javafx.stage.WindowEvent;
 
+import krugerfx.internal.jfr.LibraryEvents;
+import krugerfx.internal.scene.control.Stylesheets;
 import krugerfx.internal.scene.control.skin.StageButtonsSkin;
+import krugerfx.internal.stage.RenderScale;
 import krugerfx.scene.ShadedScene;
 
 /**
@@ -44,12 +56,28 @@ public class StageButtons extends Button {
 
     private static final String osName = System.getProperty("os.name").toLowerCase(Locale.ROOT);
 
-    private final CloseButton closeButton = new CloseButton();
-    private final MinimizeButton minimizeButton = new MinimizeButton();
-    private final MaximizeButton maximizeButton = new MaximizeButton();
-    private final FullScreenButton fullscreenButton = new FullScreenButton();
+    private CloseButton closeButton;
+    private MinimizeButton minimizeButton;
+    private MaximizeButton maximizeButton;
+    private FullScreenButton fullscreenButton;
 
     private final ObservableList<StageButton> buttons = FXCollections.<StageButton>observableArrayList();
+    private final ObservableList<StageButton> unmodifiableButtons = FXCollections.unmodifiableObservableList(buttons);
+
+    private Window trackedWindow;
+    private double renderScale;
+
+    private final InvalidationListener windowMovedListener = (Observable observable) -> {
+        updateRenderScale();
+    };
+
+    private final ChangeListener<Window> windowListener = (ObservableValue<? extends Window> observable, Window oldWindow, Window newWindow) -> {
+        trackWindow(newWindow);
+    };
+
+    // The scene and the window may outlive this control, so they only hold weak references to it
+    private final WeakInvalidationListener weakWindowMovedListener = new WeakInvalidationListener(windowMovedListener);
+    private final WeakChangeListener<Window> weakWindowListener = new WeakChangeListener<>(windowListener);
 
     /**
      * Creates a default {@code StageButton}.
@@ -71,42 +99,110 @@ public class StageButtons extends Button {
     private void initialize() {
         getStyleClass().setAll("stage-buttons");
         setButtonsList(getType());
-//        typeProperty().addListener((ObservableValue<? extends StageButtonsType> observable, StageButtonsType oldValue, StageButtonsType newValue) -> {
-//            if (newValue != oldValue) {
-//                setButtonsList(newValue);
-//            }
-//        });
+        addSceneListener();
+    }
+
+    private void addSceneListener() {
+        sceneProperty().addListener((ObservableValue<? extends Scene> observable, Scene oldScene, Scene newScene) -> {
+            if (oldScene != null) {
+                oldScene.windowProperty().removeListener(weakWindowListener);
+            }
+            if (newScene != null) {
+                newScene.windowProperty().addListener(weakWindowListener);
+            }
+            trackWindow(newScene == null ? null : newScene.getWindow());
+        });
+    }
+
+    /**
+     * Follows the position of the window so that the glyphs are swapped when it moves to a screen
+     * with another render scale.
+     *
+     * @param window the window that shows this control
+     */
+    private void trackWindow(Window window) {
+        if (trackedWindow != null) {
+            trackedWindow.xProperty().removeListener(weakWindowMovedListener);
+            trackedWindow.yProperty().removeListener(weakWindowMovedListener);
+        }
+        trackedWindow = window;
+        if (window != null) {
+            window.xProperty().addListener(weakWindowMovedListener);
+            window.yProperty().addListener(weakWindowMovedListener);
+            updateRenderScale();
+        }
     }
 
+    private void updateRenderScale() {
+        double scale = RenderScale.of(trackedWindow);
+        if (scale != renderScale) {
+            renderScale = scale;
+            buttons.forEach((button) -> button.updateGlyph(scale));
+        }
+    }
+
+    /**
+     * Updates the buttons list with the buttons of a type. The buttons are created the first time a
+     * type needs them and reused afterwards, so switching types only reorders existing nodes.
+     *
+     * @param type the type of stage buttons
+     */
     private void setButtonsList(StageButtonsType type) {
+        List<StageButtonType> types = type.getButtonTypes();
+        List<StageButton> list = new ArrayList<>(types.size());
+        for (StageButtonType buttonType : types) {
+            list.add(getButton(buttonType));
+        }
+        if (!buttons.equals(list)) {
+            buttons.setAll(list);
+        }
+    }
+
+    private StageButton getButton(StageButtonType type) {
         switch (type) {
             case CLOSE:
-                buttons.add(closeButton);
-                break;
-            case FULLSCREEN:
-                buttons.add(fullscreenButton);
-                break;
-            case CLOSE_MINIMIZE_MAXIMIZE:
-                buttons.addAll(closeButton, minimizeButton, maximizeButton);
-                break;
-            case CLOSE_MINIMIZE_FULLSCREEN:
-                buttons.addAll(closeButton, minimizeButton, fullscreenButton);
-                break;
-            case CLOSE_MINIMIZE_MAXIMIZE_FULLSCREEN:
-                buttons.addAll(closeButton, minimizeButton, maximizeButton, fullscreenButton);
-                break;
-            case MINIMIZE_MAXIMIZE_CLOSE:
-                buttons.addAll(minimizeButton, maximizeButton, closeButton);
-                break;
-            case MINIMIZE_FULLSCREEN_CLOSE:
-                buttons.addAll(minimizeButton, fullscreenButton, closeButton);
-                break;
-            case FULLSCREEN_MINIMIZE_MAXIMIZE_CLOSE:
-                buttons.addAll(fullscreenButton, minimizeButton, maximizeButton, closeButton);
-                break;
+                return closeButtonImpl();
+            case MINIMIZE:
+                return minimizeButtonImpl();
+            case MAXIMIZE:
+                return maximizeButtonImpl();
+            default:
+                return fullscreenButtonImpl();
         }
     }
 
+    private CloseButton closeButtonImpl() {
+        if (closeButton == null) {
+            closeButton = new CloseButton();
+            closeButton.setGlyphStyle(getStageButtonsStyle());
+        }
+        return closeButton;
+    }
+
+    private MinimizeButton minimizeButtonImpl() {
+        if (minimizeButton == null) {
+            minimizeButton = new MinimizeButton();
+            minimizeButton.setGlyphStyle(getStageButtonsStyle());
+        }
+        return minimizeButton;
+    }
+
+    private MaximizeButton maximizeButtonImpl() {
+        if (maximizeButton == null) {
+            maximizeButton = new MaximizeButton();
+            maximizeButton.setGlyphStyle(getStageButtonsStyle());
+        }
+        return maximizeButton;
+    }
+
+    private FullScreenButton fullscreenButtonImpl() {
+        if (fullscreenButton == null) {
+            fullscreenButton = new FullScreenButton();
+            fullscreenButton.setGlyphStyle(getStageButtonsStyle());
+        }
+        return fullscreenButton;
+    }
+
     /**
      * Create a new instance of the default skin for this control. This is called to create a skin
      * for the control if no skin is provided via CSS {@code -fx-skin} or set explicitly in a
@@ -139,8 +235,7 @@ public class StageButtons extends Button {
      */
     @Override
     public String getUserAgentStylesheet() {
-        return getClass().getResource("/krugerfx/internal/scene/control/" + getClass().
-                getSimpleName() + ".css").toExternalForm();
+        return Stylesheets.getUserAgentStylesheet(getClass());
     }
 
     private StageButtonsType getDefaultType() {
@@ -158,7 +253,13 @@ public class StageButtons extends Button {
      */
     public final ObjectProperty<StageButtonsType> typeProperty() {
         if (type == null) {
-            type = new SimpleObjectProperty<>(StageButtons.this, "type", getDefaultType());
+            type = new SimpleObjectProperty<StageButtonsType>(StageButtons.this, "type", getDefaultType()) {
+
+                @Override
+                protected void invalidated() {
+                    setButtonsList(get());
+                }
+            };
         }
         return type;
     }
@@ -177,74 +278,109 @@ public class StageButtons extends Button {
         this.typeProperty().set(type);
     }
 
-    private ObjectProperty<StageButtonsStyle> style;
+    private ObjectProperty<StageButtonsStyle> stageButtonsStyle;
 
     /**
-     * The style of stage buttons.
+     * The style of stage buttons. Each style is a precompiled stylesheet applied on top of the
+     * default one, so changing it only swaps that stylesheet in this control.
      *
      * @return the style property
      */
-    public final ObjectProperty<StageButtonsStyle> style_____Property() {
-        if (style == null) {
-            super.styleProperty();
+    public final ObjectProperty<StageButtonsStyle> stageButtonsStyleProperty() {
+        if (stageButtonsStyle == null) {
+            stageButtonsStyle = new SimpleObjectProperty<StageButtonsStyle>(StageButtons.this,
+                    "stageButtonsStyle", StageButtonsStyle.SIMPLE) {
+
+                private String stylesheet;
+
+                @Override
+                protected void invalidated() {
+                    StageButtonsStyle value = get();
+                    String newStylesheet = Stylesheets.getStylesheet(
+                            value == null ? StageButtonsStyle.SIMPLE : value);
+                    if (newStylesheet == null ? stylesheet == null : newStylesheet.equals(stylesheet)) {
+                        return;
+                    }
+                    if (stylesheet != null) {
+                        getStylesheets().remove(stylesheet);
+                    }
+                    if (newStylesheet != null) {
+                        getStylesheets().add(newStylesheet);
+                    }
+                    stylesheet = newStylesheet;
+                    StageButtonsStyle glyphStyle = value == null ? StageButtonsStyle.SIMPLE : value;
+                    if (closeButton != null) {
+                        closeButton.setGlyphStyle(glyphStyle);
+                    }
+                    if (minimizeButton != null) {
+                        minimizeButton.setGlyphStyle(glyphStyle);
+                    }
+                    if (maximizeButton != null) {
+                        maximizeButton.setGlyphStyle(glyphStyle);
+                    }
+                    if (fullscreenButton != null) {
+                        fullscreenButton.setGlyphStyle(glyphStyle);
+                    }
+                }
+            };
         }
-        return style;
+        return stageButtonsStyle;
     }
 
     /**
      * @return the style
      */
-    public final StageButtonsStyle get_____Style() {
-        return style_____Property().getValue();
+    public final StageButtonsStyle getStageButtonsStyle() {
+        return stageButtonsStyle == null ? StageButtonsStyle.SIMPLE : stageButtonsStyle.get();
     }
 
     /**
      * @param style the style to set
      */
-    public final void set_____Style(StageButtonsStyle style) {
-        this.style_____Property().setValue(style);
+    public final void setStageButtonsStyle(StageButtonsStyle style) {
+        stageButtonsStyleProperty().set(style);
     }
 
     /**
      * @return the close button
      */
     public final Button getCloseButton() {
-        return getType().hasClose() ? closeButton : null;
+        return getType().hasClose() ? closeButtonImpl() : null;
     }
 
     /**
      * @return the minimize button
      */
     public final Button getMinimizeButton() {
-        return getType().hasMinimize() ? minimizeButton : null;
+        return getType().hasMinimize() ? minimizeButtonImpl() : null;
     }
 
     /**
      * @return the maximize button
      */
     public final Button getMaximizeButton() {
-        return getType().hasMaximize() ? maximizeButton : null;
+        return getType().hasMaximize() ? maximizeButtonImpl() : null;
     }
 
     /**
      * @return the fullscreen button
      */
     public final Button getFullscreenButton() {
-        return getType().hasFullscreen() ? fullscreenButton : null;
+        return getType().hasFullscreen() ? fullscreenButtonImpl() : null;
     }
 
     /**
      * The buttons to show within this StageButtons.
      *
-     * If this ObservableList is modified at runtime, the StageButton will update as expected. ???
-     * This list is unmodifiable. ???
+     * This list is unmodifiable. It is updated, reusing the same button instances, whenever the
+     * {@link #typeProperty() type} changes.
      *
      * @return the buttons list
      *
      * @see StageButton
      */
     public final ObservableList<StageButton> getButtons() {
-        return FXCollections.unmodifiableObservableList(buttons);
+        return unmodifiableButtons;
     }
 
     //<editor-fold defaultstate="collapsed" desc="Private classes">
@@ -276,7 +412,11 @@ public class StageButtons extends Button {
 
         private void minimize() {
             Stage stage = (Stage) getScene().getWindow();
+            Object event = LibraryEvents.WINDOW_STATE.begin();
             stage.setIconified(true);
+            if (event != null) {
+                LibraryEvents.WINDOW_STATE.commit(event, "minimize");
+            }
         }
 
         @Override
@@ -331,8 +471,14 @@ public class StageButtons extends Button {
 
             // Implementação antiga
             Stage stage = (Stage) getScene().getWindow();
-
-            if (maximized) {
+            Object event = LibraryEvents.WINDOW_STATE.begin();
+
+            if (getScene() instanceof ShadedScene) {
+                // The scene keeps the maximized state, so it can be saved and restored
+                ShadedScene scene = (ShadedScene) getScene();
+                scene.setMaximized(!scene.isMaximized());
+                maximized = scene.isMaximized();
+            } else if (maximized) {
                 restoreSavedBounds(stage);
                 savedBounds = null;
                 maximized = false;
@@ -352,6 +498,9 @@ public class StageButtons extends Button {
                 stage.setHeight(visualBounds.getHeight() + d * 2);
                 maximized = true;
             }
+            if (event != null) {
+                LibraryEvents.WINDOW_STATE.commit(event, maximized ? "maximize" : "restore");
+            }
         }
 
         @Override
@@ -372,7 +521,11 @@ public class StageButtons extends Button {
 
         private void setFullScreen(boolean value) {
             Stage stage = (Stage) getScene().getWindow();
+            Object event = LibraryEvents.WINDOW_STATE.begin();
             stage.setFullScreen(value);
+            if (event != null) {
+                LibraryEvents.WINDOW_STATE.commit(event, value ? "enter-fullscreen" : "exit-fullscreen");
+            }
         }
 
         @Override
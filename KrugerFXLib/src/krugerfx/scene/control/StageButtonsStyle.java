@@ -85,11 +85,11 @@ public enum StageButtonsStyle {
             case WINDOWS_XP:
                 return "Windows XP";
             case WINDOWS_7:
-                return "Windows XP";
+                return "Windows 7";
             case WINDOWS_8:
-                return "Windows XP";
+                return "Windows 8";
             case WINDOWS_10:
-                return "Windows XP";
+                return "Windows 10";
             case LINUX_GNONE:
                 return "Linux Gnome";
             case LINUX_KDE:
@@ -16,6 +16,10 @@
  */
 package krugerfx.scene.control;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  *
  * @author kleberkruger
@@ -85,6 +89,39 @@ public enum StageButtonsType {
                 && this != MINIMIZE_MAXIMIZE_CLOSE;
     }
 
+    /**
+     * Gets the types of the buttons defined by this {@code StageButtonsType}, in display order.
+     *
+     * @return an unmodifiable list with the button types
+     */
+    public List<StageButtonType> getButtonTypes() {
+        switch (this) {
+            case CLOSE:
+                return Collections.singletonList(StageButtonType.CLOSE);
+            case FULLSCREEN:
+                return Collections.singletonList(StageButtonType.FULLSCREEN);
+            case CLOSE_MINIMIZE_MAXIMIZE:
+                return Collections.unmodifiableList(Arrays.asList(StageButtonType.CLOSE,
+                        StageButtonType.MINIMIZE, StageButtonType.MAXIMIZE));
+            case CLOSE_MINIMIZE_FULLSCREEN:
+                return Collections.unmodifiableList(Arrays.asList(StageButtonType.CLOSE,
+                        StageButtonType.MINIMIZE, StageButtonType.FULLSCREEN));
+            case CLOSE_MINIMIZE_MAXIMIZE_FULLSCREEN:
+                return Collections.unmodifiableList(Arrays.asList(StageButtonType.CLOSE,
+                        StageButtonType.MINIMIZE, StageButtonType.MAXIMIZE, StageButtonType.FULLSCREEN));
+            case MINIMIZE_MAXIMIZE_CLOSE:
+                return Collections.unmodifiableList(Arrays.asList(StageButtonType.MINIMIZE,
+                        StageButtonType.MAXIMIZE, StageButtonType.CLOSE));
+            case MINIMIZE_FULLSCREEN_CLOSE:
+                return Collections.unmodifiableList(Arrays.asList(StageButtonType.MINIMIZE,
+                        StageButtonType.FULLSCREEN, StageButtonType.CLOSE));
+            case FULLSCREEN_MINIMIZE_MAXIMIZE_CLOSE:
+                return Collections.unmodifiableList(Arrays.asList(StageButtonType.FULLSCREEN,
+                        StageButtonType.MINIMIZE, StageButtonType.MAXIMIZE, StageButtonType.CLOSE));
+        }
+        return Collections.emptyList();
+    }
+
     @Override
     public String toString() {
         switch (this) {